@@ -0,0 +1,100 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import java.util.concurrent.ExecutorService;
+
+/**
+ * <p>
+ * {@link VCardEntryHandler} passing entries to another handler which runs on its own thread,
+ * so that building entries and handling them (e.g. {@link VCardEntryCommitter}) overlap.
+ * </p>
+ * <p>
+ * Entries are delivered in the order they were created. When the given number of entries
+ * are waiting, the calling thread blocks until the handler catches up. {@link #onEnd()}
+ * returns after all the entries have been delivered. A RuntimeException thrown by the handler
+ * is rethrown in the calling thread. When parsing stops with an exception,
+ * call {@link #abort()} to stop the handler thread.
+ * </p>
+ * <p>
+ * See also {@link VCardAsyncInterpreter}.
+ * </p>
+ */
+public class VCardAsyncEntryHandler implements VCardEntryHandler {
+    private final VCardEntryHandler mEntryHandler;
+    private final VCardDispatcher mDispatcher;
+
+    /**
+     * Runs the handler on a thread created for each parse.
+     *
+     * @param capacity The maximum number of entries waiting for the handler.
+     */
+    public VCardAsyncEntryHandler(VCardEntryHandler entryHandler, int capacity) {
+        this(entryHandler, capacity, null);
+    }
+
+    /**
+     * Runs the handler with the given executor, which keeps one of its threads during
+     * each parse. The executor is not shut down by this object.
+     */
+    public VCardAsyncEntryHandler(VCardEntryHandler entryHandler, int capacity,
+            ExecutorService executor) {
+        if (entryHandler == null) {
+            throw new NullPointerException("VCardEntryHandler must not be null.");
+        }
+        mEntryHandler = entryHandler;
+        mDispatcher = new VCardDispatcher(capacity, executor);
+    }
+
+    @Override
+    public void onStart() {
+        mDispatcher.start();
+        mDispatcher.post(new Runnable() {
+            @Override
+            public void run() {
+                mEntryHandler.onStart();
+            }
+        });
+    }
+
+    @Override
+    public void onEntryCreated(final VCardEntry entry) {
+        mDispatcher.post(new Runnable() {
+            @Override
+            public void run() {
+                mEntryHandler.onEntryCreated(entry);
+            }
+        });
+    }
+
+    @Override
+    public void onEnd() {
+        mDispatcher.post(new Runnable() {
+            @Override
+            public void run() {
+                mEntryHandler.onEnd();
+            }
+        });
+        mDispatcher.finish();
+    }
+
+    /**
+     * Stops the handler thread without delivering the entries not delivered yet.
+     */
+    public void abort() {
+        mDispatcher.abort();
+    }
+}
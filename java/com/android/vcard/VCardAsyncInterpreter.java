@@ -0,0 +1,154 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+
+/**
+ * <p>
+ * {@link VCardInterpreter} passing the events from a parser to another interpreter which runs
+ * on its own thread, so that parsing and interpretation (e.g. {@link VCardEntryConstructor})
+ * overlap instead of running one after another.
+ * </p>
+ * <p>
+ * Events of each top-level entry are queued together once the entry ends, and delivered in
+ * the order they were emitted. When the given number of entries are waiting, the parsing
+ * thread blocks until the interpreter catches up. {@link #onVCardEnded()} returns after
+ * all the events have been delivered, so the results of the interpreter are complete when
+ * parse() returns.
+ * </p>
+ * <p>
+ * Properties are handed to the other thread, so this class must not be used with
+ * {@link VCardParser#setReuseProperties(boolean)}. A RuntimeException thrown by the
+ * interpreter is rethrown in the parsing thread. When parse() throws, call {@link #abort()}
+ * to stop the interpreter thread.
+ * </p>
+ * <code>
+ * VCardEntryConstructor constructor = new VCardEntryConstructor();
+ * constructor.addEntryHandler(new VCardAsyncEntryHandler(committer, 16));
+ * parser.addInterpreter(new VCardAsyncInterpreter(constructor, 16));
+ * parser.parse(is);
+ * </code>
+ */
+public class VCardAsyncInterpreter implements VCardInterpreter {
+    private static final Object ENTRY_STARTED = new Object();
+    private static final Object ENTRY_ENDED = new Object();
+
+    private final VCardInterpreter mInterpreter;
+    private final VCardDispatcher mDispatcher;
+
+    private List<Object> mEvents = new ArrayList<Object>();
+    private int mNestDepth;
+
+    /**
+     * Runs the interpreter on a thread created for each parse.
+     *
+     * @param capacity The maximum number of entries waiting for the interpreter.
+     */
+    public VCardAsyncInterpreter(VCardInterpreter interpreter, int capacity) {
+        this(interpreter, capacity, null);
+    }
+
+    /**
+     * Runs the interpreter with the given executor, which keeps one of its threads during
+     * each parse. The executor is not shut down by this object.
+     */
+    public VCardAsyncInterpreter(VCardInterpreter interpreter, int capacity,
+            ExecutorService executor) {
+        if (interpreter == null) {
+            throw new NullPointerException("VCardInterpreter must not be null.");
+        }
+        mInterpreter = interpreter;
+        mDispatcher = new VCardDispatcher(capacity, executor);
+    }
+
+    @Override
+    public void onVCardStarted() {
+        mEvents = new ArrayList<Object>();
+        mNestDepth = 0;
+        mDispatcher.start();
+        mDispatcher.post(new Runnable() {
+            @Override
+            public void run() {
+                mInterpreter.onVCardStarted();
+            }
+        });
+    }
+
+    @Override
+    public void onVCardEnded() {
+        // Parsing may have been canceled in the middle of an entry.
+        flush();
+        mDispatcher.post(new Runnable() {
+            @Override
+            public void run() {
+                mInterpreter.onVCardEnded();
+            }
+        });
+        mDispatcher.finish();
+    }
+
+    @Override
+    public void onEntryStarted() {
+        mNestDepth++;
+        mEvents.add(ENTRY_STARTED);
+    }
+
+    @Override
+    public void onEntryEnded() {
+        mEvents.add(ENTRY_ENDED);
+        if (--mNestDepth <= 0) {
+            mNestDepth = 0;
+            flush();
+        }
+    }
+
+    @Override
+    public void onPropertyCreated(VCardProperty property) {
+        mEvents.add(property);
+    }
+
+    /**
+     * Stops the interpreter thread without delivering the events not delivered yet.
+     */
+    public void abort() {
+        mDispatcher.abort();
+    }
+
+    private void flush() {
+        if (mEvents.isEmpty()) {
+            return;
+        }
+        final List<Object> events = mEvents;
+        mEvents = new ArrayList<Object>();
+        mDispatcher.post(new Runnable() {
+            @Override
+            public void run() {
+                for (Object event : events) {
+                    if (event == ENTRY_STARTED) {
+                        mInterpreter.onEntryStarted();
+                    } else if (event == ENTRY_ENDED) {
+                        mInterpreter.onEntryEnded();
+                    } else {
+                        mInterpreter.onPropertyCreated((VCardProperty) event);
+                    }
+                }
+            }
+        });
+    }
+}
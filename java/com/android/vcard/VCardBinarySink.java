@@ -0,0 +1,45 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import java.io.IOException;
+
+/**
+ * <p>
+ * Decides where binary values (e.g. PHOTO or LOGO encoded with BASE64) are stored while
+ * a parser decodes them.
+ * </p>
+ * <p>
+ * The parser asks for one {@link VCardBinaryValue} per property, writes decoded bytes to
+ * {@link VCardBinaryValue#openOutputStream()} as soon as each line of the value is read,
+ * and attaches the value to the {@link VCardProperty} via
+ * {@link VCardProperty#setBinaryValue(VCardBinaryValue)}. The whole encoded value is never
+ * held in memory unless the sink does so.
+ * </p>
+ * <p>
+ * See {@link VCardBinaryValue#memorySink()}, {@link VCardBinaryValue#temporaryFileSink(java.io.File)},
+ * and {@link VCardBinaryValue#byteBufferSink(java.nio.ByteBuffer)} for available implementations.
+ * Implementations used with {@link VCardParallelParser} must be thread-safe.
+ * </p>
+ */
+public interface VCardBinarySink {
+    /**
+     * @param property The property whose value is going to be decoded. Its name and parameters
+     * are already available.
+     * @return A new value to which decoded bytes are written.
+     */
+    VCardBinaryValue createValue(VCardProperty property) throws IOException;
+}
@@ -0,0 +1,433 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+
+/**
+ * <p>
+ * Handle for a binary value (e.g. PHOTO) decoded by a parser into a {@link VCardBinarySink}.
+ * </p>
+ * <p>
+ * Bytes are written once through {@link #openOutputStream()}, which is closed by the parser
+ * when the value ends. After that, the value can be read through {@link #openInputStream()},
+ * or loaded at once with {@link #getBytes()} when it is known to be small enough.
+ * </p>
+ */
+public abstract class VCardBinaryValue {
+    /**
+     * @return The stream to which decoded bytes are written. Called once by the parser.
+     */
+    public abstract OutputStream openOutputStream() throws IOException;
+
+    /**
+     * @return A new stream reading the decoded bytes.
+     */
+    public abstract InputStream openInputStream() throws IOException;
+
+    /**
+     * @return The number of decoded bytes.
+     */
+    public abstract long getLength();
+
+    /**
+     * Loads the whole value into memory.
+     */
+    public byte[] getBytes() throws IOException {
+        final long length = getLength();
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Binary value too large: " + length + " bytes");
+        }
+        final byte[] bytes = new byte[(int) length];
+        final InputStream is = openInputStream();
+        try {
+            int offset = 0;
+            while (offset < bytes.length) {
+                final int count = is.read(bytes, offset, bytes.length - offset);
+                if (count < 0) {
+                    throw new IOException("Binary value ended unexpectedly");
+                }
+                offset += count;
+            }
+        } finally {
+            is.close();
+        }
+        return bytes;
+    }
+
+    /**
+     * @return A read-only buffer containing the decoded bytes.
+     */
+    public ByteBuffer getByteBuffer() throws IOException {
+        return ByteBuffer.wrap(getBytes()).asReadOnlyBuffer();
+    }
+
+    /**
+     * Releases resources held by this value (e.g. a temporary file). The value must not be
+     * read after this call.
+     */
+    public void release() {
+    }
+
+    /**
+     * @return False when the decoded bytes cannot be read back (see
+     * {@link #forOutputStream(OutputStream)}).
+     */
+    /* package */ boolean isReadable() {
+        return true;
+    }
+
+    /**
+     * @return The sink keeping each value in its own byte array. Used by parsers unless another
+     * sink is specified.
+     */
+    public static VCardBinarySink memorySink() {
+        return new VCardBinarySink() {
+            @Override
+            public VCardBinaryValue createValue(VCardProperty property) {
+                return new MemoryValue();
+            }
+        };
+    }
+
+    /**
+     * @return The sink writing each value into a new temporary file in the given directory,
+     * which is deleted by {@link #release()}.
+     */
+    public static VCardBinarySink temporaryFileSink(final File directory) {
+        return new VCardBinarySink() {
+            @Override
+            public VCardBinaryValue createValue(VCardProperty property) throws IOException {
+                return new FileValue(File.createTempFile("vcard", ".bin", directory));
+            }
+        };
+    }
+
+    /**
+     * @return The sink keeping each value in memory up to the given number of bytes, and
+     * moving it into a new temporary file in the given directory once it grows larger.
+     * The file is deleted by {@link #release()}, or when the value is loaded by
+     * {@link #getBytes()}.
+     */
+    public static VCardBinarySink spillingSink(final int threshold, final File directory) {
+        return new VCardBinarySink() {
+            @Override
+            public VCardBinaryValue createValue(VCardProperty property) {
+                return new SpillingValue(threshold, directory);
+            }
+        };
+    }
+
+    /**
+     * @return The sink appending values one after another at the position of the given buffer.
+     * Each value refers to its own region of the buffer, which is given back by
+     * {@link #release()} when no value has been appended after it. An IOException is thrown when
+     * the buffer becomes full. The sink is not thread-safe.
+     */
+    public static VCardBinarySink byteBufferSink(final ByteBuffer buffer) {
+        return new VCardBinarySink() {
+            @Override
+            public VCardBinaryValue createValue(VCardProperty property) {
+                return new ByteBufferValue(buffer);
+            }
+        };
+    }
+
+    /**
+     * @return A value passing decoded bytes to the given stream, which is flushed but not
+     * closed when the value ends. The value cannot be read back, so {@link #openInputStream()}
+     * and {@link #getBytes()} throw IOException, and {@link VCardProperty#getByteValue()}
+     * returns null. Useful for sinks writing directly to streams supplied by callers.
+     */
+    public static VCardBinaryValue forOutputStream(OutputStream os) {
+        return new StreamValue(os);
+    }
+
+    private static final class MemoryValue extends VCardBinaryValue {
+        private ByteArrayOutputStream mStream;
+        private byte[] mBytes;
+
+        @Override
+        public OutputStream openOutputStream() {
+            mStream = new ByteArrayOutputStream();
+            return mStream;
+        }
+
+        @Override
+        public InputStream openInputStream() {
+            return new ByteArrayInputStream(getBytes());
+        }
+
+        @Override
+        public long getLength() {
+            if (mStream != null) {
+                return mStream.size();
+            }
+            return mBytes != null ? mBytes.length : 0;
+        }
+
+        @Override
+        public byte[] getBytes() {
+            if (mStream != null) {
+                // The value has ended. Keep only the copy so that the bytes are held once.
+                mBytes = mStream.toByteArray();
+                mStream = null;
+            }
+            return mBytes != null ? mBytes : new byte[0];
+        }
+
+        @Override
+        public void release() {
+            mStream = null;
+            mBytes = null;
+        }
+    }
+
+    private static final class FileValue extends VCardBinaryValue {
+        private final File mFile;
+
+        public FileValue(File file) {
+            mFile = file;
+        }
+
+        @Override
+        public OutputStream openOutputStream() throws IOException {
+            return new BufferedOutputStream(new FileOutputStream(mFile));
+        }
+
+        @Override
+        public InputStream openInputStream() throws IOException {
+            return new FileInputStream(mFile);
+        }
+
+        @Override
+        public long getLength() {
+            return mFile.length();
+        }
+
+        @Override
+        public void release() {
+            mFile.delete();
+        }
+    }
+
+    private static final class SpillingValue extends VCardBinaryValue {
+        private final int mThreshold;
+        private final File mDirectory;
+        private ByteArrayOutputStream mStream;
+        private byte[] mBytes;
+        private File mFile;
+        private long mLength;
+
+        public SpillingValue(int threshold, File directory) {
+            mThreshold = threshold;
+            mDirectory = directory;
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            mStream = new ByteArrayOutputStream();
+            return new FilterOutputStream(mStream) {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[] { (byte) b }, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    if (mFile == null && mLength + len > mThreshold) {
+                        // Move the bytes so far into a file, and write the rest there.
+                        mFile = File.createTempFile("vcard", ".bin", mDirectory);
+                        out = new BufferedOutputStream(new FileOutputStream(mFile));
+                        mStream.writeTo(out);
+                        mStream = null;
+                    }
+                    out.write(b, off, len);
+                    mLength += len;
+                }
+            };
+        }
+
+        @Override
+        public InputStream openInputStream() throws IOException {
+            if (mFile != null) {
+                return new FileInputStream(mFile);
+            }
+            return new ByteArrayInputStream(getBytes());
+        }
+
+        @Override
+        public long getLength() {
+            return mLength;
+        }
+
+        @Override
+        public byte[] getBytes() throws IOException {
+            if (mFile != null) {
+                // Once loaded, the value is kept in memory and the file is not needed anymore.
+                mBytes = super.getBytes();
+                mFile.delete();
+                mFile = null;
+            }
+            if (mStream != null) {
+                mBytes = mStream.toByteArray();
+                mStream = null;
+            }
+            return mBytes != null ? mBytes : new byte[0];
+        }
+
+        @Override
+        public void release() {
+            mStream = null;
+            mBytes = null;
+            if (mFile != null) {
+                mFile.delete();
+            }
+        }
+    }
+
+    private static final class ByteBufferValue extends VCardBinaryValue {
+        private final ByteBuffer mBuffer;
+        private int mStart;
+        private int mEnd;
+
+        public ByteBufferValue(ByteBuffer buffer) {
+            mBuffer = buffer;
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            mStart = mBuffer.position();
+            mEnd = mStart;
+            return new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[] { (byte) b }, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    try {
+                        mBuffer.put(b, off, len);
+                    } catch (BufferOverflowException e) {
+                        throw new IOException("No room in buffer for binary value");
+                    }
+                    mEnd = mBuffer.position();
+                }
+            };
+        }
+
+        @Override
+        public InputStream openInputStream() throws IOException {
+            final ByteBuffer buffer = getByteBuffer();
+            return new InputStream() {
+                @Override
+                public int read() {
+                    return buffer.hasRemaining() ? (buffer.get() & 0xFF) : -1;
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    if (!buffer.hasRemaining()) {
+                        return -1;
+                    }
+                    final int count = Math.min(len, buffer.remaining());
+                    buffer.get(b, off, count);
+                    return count;
+                }
+            };
+        }
+
+        @Override
+        public long getLength() {
+            return mEnd - mStart;
+        }
+
+        @Override
+        public ByteBuffer getByteBuffer() {
+            final ByteBuffer region = mBuffer.duplicate();
+            region.limit(mEnd);
+            region.position(mStart);
+            return region.slice().asReadOnlyBuffer();
+        }
+
+        @Override
+        public void release() {
+            // Give the region back when nothing has been appended after it.
+            if (mBuffer.position() == mEnd) {
+                mBuffer.position(mStart);
+            }
+            mEnd = mStart;
+        }
+    }
+
+    private static final class StreamValue extends VCardBinaryValue {
+        private final OutputStream mOutputStream;
+        private long mLength;
+
+        public StreamValue(OutputStream os) {
+            mOutputStream = os;
+        }
+
+        @Override
+        public OutputStream openOutputStream() {
+            return new FilterOutputStream(mOutputStream) {
+                @Override
+                public void write(int b) throws IOException {
+                    out.write(b);
+                    mLength++;
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    out.write(b, off, len);
+                    mLength += len;
+                }
+
+                @Override
+                public void close() throws IOException {
+                    flush();
+                }
+            };
+        }
+
+        @Override
+        public InputStream openInputStream() throws IOException {
+            throw new IOException("Value was passed to a caller's stream");
+        }
+
+        @Override
+        public long getLength() {
+            return mLength;
+        }
+
+        @Override
+        /* package */ boolean isReadable() {
+            return false;
+        }
+    }
+}
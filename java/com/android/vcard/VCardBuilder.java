@@ -34,8 +34,6 @@ import android.text.TextUtils;
 import android.util.Base64;
 import android.util.Log;
 
-import com.android.vcard.VCardUtils.PhoneNumberUtilsPort;
-
 import java.io.UnsupportedEncodingException;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -849,8 +847,8 @@ public class VCardBuilder {
                                 }
                                 final int phoneFormat =
                                         VCardUtils.getPhoneNumberFormat(mVCardType);
-                                formatted = PhoneNumberUtilsPort.formatNumber(
-                                        digitsOnlyBuilder.toString(), phoneFormat);
+                                formatted = VCardPhoneNumberFormatCache.getInstance()
+                                        .formatNumber(digitsOnlyBuilder.toString(), phoneFormat);
                             } else {
                                 // Be conservative.
                                 formatted = numberWithControlSequence;
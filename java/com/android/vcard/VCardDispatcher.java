@@ -0,0 +1,185 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import android.util.Log;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <p>
+ * Runs tasks posted by one producer thread on one consumer thread, in the order they are
+ * posted. At most the given number of tasks wait in the queue; {@link #post(Runnable)}
+ * blocks while it is full, so that a slow consumer slows down the producer instead of
+ * letting memory usage grow.
+ * </p>
+ * <p>
+ * A RuntimeException or Error thrown by a task is rethrown to the producer by the next
+ * {@link #post(Runnable)} or {@link #finish()}. Tasks posted after that are dropped.
+ * </p>
+ * @hide
+ */
+/* package */ final class VCardDispatcher {
+    private static final String LOG_TAG = VCardConstants.LOG_TAG;
+
+    private static final Runnable END = new Runnable() {
+        @Override
+        public void run() {
+        }
+    };
+
+    private final BlockingQueue<Runnable> mQueue;
+    private final ExecutorService mExecutor;
+
+    private ExecutorService mOwnExecutor;
+    private Future<?> mFuture;
+    private boolean mAborted;
+    private volatile Throwable mFailure;
+
+    /**
+     * @param executor The executor running the consumer, or null to run it on a thread
+     * created for each {@link #start()}.
+     */
+    public VCardDispatcher(int capacity, ExecutorService executor) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive: " + capacity);
+        }
+        mQueue = new ArrayBlockingQueue<Runnable>(capacity);
+        mExecutor = executor;
+    }
+
+    public void start() {
+        if (mFuture != null) {
+            abort();
+        }
+        mQueue.clear();
+        mAborted = false;
+        mFailure = null;
+        ExecutorService executor = mExecutor;
+        if (executor == null) {
+            mOwnExecutor = Executors.newSingleThreadExecutor();
+            executor = mOwnExecutor;
+        }
+        mFuture = executor.submit(new Runnable() {
+            @Override
+            public void run() {
+                consume();
+            }
+        });
+    }
+
+    private void consume() {
+        while (true) {
+            final Runnable task;
+            try {
+                task = mQueue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (task == END) {
+                return;
+            }
+            if (mFailure != null) {
+                // Keep draining the queue so that the producer never blocks on it.
+                continue;
+            }
+            try {
+                task.run();
+            } catch (RuntimeException e) {
+                mFailure = e;
+            } catch (Error e) {
+                mFailure = e;
+            }
+        }
+    }
+
+    /**
+     * Queues the task, waiting while the queue is full. When the producer thread is
+     * interrupted, the dispatch is aborted and the interrupt status is kept.
+     */
+    public void post(Runnable task) {
+        rethrowFailure();
+        if (mAborted) {
+            return;
+        }
+        if (mFuture == null) {
+            throw new IllegalStateException("Dispatch has not been started.");
+        }
+        try {
+            mQueue.put(task);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            Log.i(LOG_TAG, "Interrupted while dispatching. Dropping pending tasks.");
+            abort();
+        }
+    }
+
+    /**
+     * Waits until all the tasks posted so far have been run.
+     */
+    public void finish() {
+        if (mFuture != null) {
+            try {
+                mQueue.put(END);
+                mFuture.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                Log.i(LOG_TAG, "Interrupted while dispatching. Dropping pending tasks.");
+                abort();
+            } catch (ExecutionException e) {
+                mFailure = e.getCause();
+            }
+            stop();
+        }
+        rethrowFailure();
+    }
+
+    /**
+     * Stops the consumer without running the tasks still in the queue.
+     */
+    public void abort() {
+        mAborted = true;
+        if (mFuture != null) {
+            mFuture.cancel(true);
+        }
+        mQueue.clear();
+        stop();
+    }
+
+    private void stop() {
+        mFuture = null;
+        if (mOwnExecutor != null) {
+            mOwnExecutor.shutdownNow();
+            mOwnExecutor = null;
+        }
+    }
+
+    private void rethrowFailure() {
+        final Throwable failure = mFailure;
+        if (failure instanceof RuntimeException) {
+            throw (RuntimeException) failure;
+        } else if (failure instanceof Error) {
+            throw (Error) failure;
+        } else if (failure != null) {
+            throw new RuntimeException(failure);
+        }
+    }
+}
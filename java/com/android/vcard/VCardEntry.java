@@ -16,8 +16,6 @@
 
 package com.android.vcard;
 
-import com.android.vcard.VCardUtils.PhoneNumberUtilsPort;
-
 import android.accounts.Account;
 import android.content.ContentProviderOperation;
 import android.content.ContentResolver;
@@ -84,6 +82,85 @@ public class VCardEntry {
                 Im.PROTOCOL_GOOGLE_TALK);
     }
 
+    // Ids of the properties handled by addProperty(), found with one lookup per property
+    // instead of comparing the name with each known name in turn. Must be less than 32.
+    private static final int PROPERTY_ID_UNKNOWN = 0;
+    private static final int PROPERTY_ID_VERSION = 1;
+    private static final int PROPERTY_ID_FN = 2;
+    private static final int PROPERTY_ID_NAME = 3;
+    private static final int PROPERTY_ID_N = 4;
+    private static final int PROPERTY_ID_SORT_STRING = 5;
+    private static final int PROPERTY_ID_NICKNAME = 6;
+    private static final int PROPERTY_ID_X_NICKNAME = 7;
+    private static final int PROPERTY_ID_SOUND = 8;
+    private static final int PROPERTY_ID_ADR = 9;
+    private static final int PROPERTY_ID_EMAIL = 10;
+    private static final int PROPERTY_ID_ORG = 11;
+    private static final int PROPERTY_ID_TITLE = 12;
+    private static final int PROPERTY_ID_ROLE = 13;
+    private static final int PROPERTY_ID_PHOTO = 14;
+    private static final int PROPERTY_ID_LOGO = 15;
+    private static final int PROPERTY_ID_TEL = 16;
+    private static final int PROPERTY_ID_X_SKYPE_PSTNNUMBER = 17;
+    private static final int PROPERTY_ID_IM = 18;
+    private static final int PROPERTY_ID_NOTE = 19;
+    private static final int PROPERTY_ID_URL = 20;
+    private static final int PROPERTY_ID_BDAY = 21;
+    private static final int PROPERTY_ID_ANNIVERSARY = 22;
+    private static final int PROPERTY_ID_X_PHONETIC_FIRST_NAME = 23;
+    private static final int PROPERTY_ID_X_PHONETIC_MIDDLE_NAME = 24;
+    private static final int PROPERTY_ID_X_PHONETIC_LAST_NAME = 25;
+    private static final int PROPERTY_ID_IMPP = 26;
+    private static final int PROPERTY_ID_X_SIP = 27;
+    private static final int PROPERTY_ID_X_ANDROID_CUSTOM = 28;
+    private static final int PROPERTY_ID_UNKNOWN_X = 29;
+
+    /**
+     * Ids of the properties which use their values as a list, not joined into one String.
+     */
+    private static final int PROPERTY_IDS_USING_VALUE_LIST = (1 << PROPERTY_ID_VERSION)
+            | (1 << PROPERTY_ID_N) | (1 << PROPERTY_ID_ADR) | (1 << PROPERTY_ID_ORG)
+            | (1 << PROPERTY_ID_ROLE) | (1 << PROPERTY_ID_PHOTO) | (1 << PROPERTY_ID_LOGO);
+
+    private static final Map<String, Integer> sPropertyIdMap = new HashMap<String, Integer>();
+
+    static {
+        sPropertyIdMap.put(VCardConstants.PROPERTY_VERSION, PROPERTY_ID_VERSION);
+        sPropertyIdMap.put(VCardConstants.PROPERTY_FN, PROPERTY_ID_FN);
+        sPropertyIdMap.put(VCardConstants.PROPERTY_NAME, PROPERTY_ID_NAME);
+        sPropertyIdMap.put(VCardConstants.PROPERTY_N, PROPERTY_ID_N);
+        sPropertyIdMap.put(VCardConstants.PROPERTY_SORT_STRING, PROPERTY_ID_SORT_STRING);
+        sPropertyIdMap.put(VCardConstants.PROPERTY_NICKNAME, PROPERTY_ID_NICKNAME);
+        sPropertyIdMap.put(VCardConstants.ImportOnly.PROPERTY_X_NICKNAME, PROPERTY_ID_X_NICKNAME);
+        sPropertyIdMap.put(VCardConstants.PROPERTY_SOUND, PROPERTY_ID_SOUND);
+        sPropertyIdMap.put(VCardConstants.PROPERTY_ADR, PROPERTY_ID_ADR);
+        sPropertyIdMap.put(VCardConstants.PROPERTY_EMAIL, PROPERTY_ID_EMAIL);
+        sPropertyIdMap.put(VCardConstants.PROPERTY_ORG, PROPERTY_ID_ORG);
+        sPropertyIdMap.put(VCardConstants.PROPERTY_TITLE, PROPERTY_ID_TITLE);
+        sPropertyIdMap.put(VCardConstants.PROPERTY_ROLE, PROPERTY_ID_ROLE);
+        sPropertyIdMap.put(VCardConstants.PROPERTY_PHOTO, PROPERTY_ID_PHOTO);
+        sPropertyIdMap.put(VCardConstants.PROPERTY_LOGO, PROPERTY_ID_LOGO);
+        sPropertyIdMap.put(VCardConstants.PROPERTY_TEL, PROPERTY_ID_TEL);
+        sPropertyIdMap.put(VCardConstants.PROPERTY_X_SKYPE_PSTNNUMBER,
+                PROPERTY_ID_X_SKYPE_PSTNNUMBER);
+        sPropertyIdMap.put(VCardConstants.PROPERTY_NOTE, PROPERTY_ID_NOTE);
+        sPropertyIdMap.put(VCardConstants.PROPERTY_URL, PROPERTY_ID_URL);
+        sPropertyIdMap.put(VCardConstants.PROPERTY_BDAY, PROPERTY_ID_BDAY);
+        sPropertyIdMap.put(VCardConstants.PROPERTY_ANNIVERSARY, PROPERTY_ID_ANNIVERSARY);
+        sPropertyIdMap.put(VCardConstants.PROPERTY_X_PHONETIC_FIRST_NAME,
+                PROPERTY_ID_X_PHONETIC_FIRST_NAME);
+        sPropertyIdMap.put(VCardConstants.PROPERTY_X_PHONETIC_MIDDLE_NAME,
+                PROPERTY_ID_X_PHONETIC_MIDDLE_NAME);
+        sPropertyIdMap.put(VCardConstants.PROPERTY_X_PHONETIC_LAST_NAME,
+                PROPERTY_ID_X_PHONETIC_LAST_NAME);
+        sPropertyIdMap.put(VCardConstants.PROPERTY_IMPP, PROPERTY_ID_IMPP);
+        sPropertyIdMap.put(VCardConstants.PROPERTY_X_SIP, PROPERTY_ID_X_SIP);
+        sPropertyIdMap.put(VCardConstants.PROPERTY_X_ANDROID_CUSTOM, PROPERTY_ID_X_ANDROID_CUSTOM);
+        for (String imPropertyName : sImMap.keySet()) {
+            sPropertyIdMap.put(imPropertyName, PROPERTY_ID_IM);
+        }
+    }
+
     /**
      * Whether to insert this VCardEntry as RawContacts.STARRED
      */
@@ -1807,7 +1884,7 @@ public class VCardEntry {
             }
             if (!hasPauseOrWait) {
                 final int formattingType = VCardUtils.getPhoneNumberFormat(mVCardType);
-                formattedNumber = PhoneNumberUtilsPort.formatNumber(
+                formattedNumber = VCardPhoneNumberFormatCache.getInstance().formatNumber(
                         builder.toString(), formattingType);
             } else {
                 formattedNumber = builder.toString();
@@ -2137,36 +2214,58 @@ public class VCardEntry {
 
     public void addProperty(final VCardProperty property) {
         final String propertyName = property.getName();
-        final Map<String, Collection<String>> paramMap = property.getParameterMap();
+        // Resolved first, so that values of ignored properties are neither decoded nor loaded.
+        final int propertyId = getPropertyId(propertyName);
+        if (propertyId == PROPERTY_ID_UNKNOWN) {
+            return;
+        }
         final List<String> propertyValueList = property.getValueList();
-        byte[] propertyBytes = property.getByteValue();
-
+        // Only PHOTO and LOGO use the binary value, which may have to be loaded from a file.
+        final byte[] propertyBytes =
+                (propertyId == PROPERTY_ID_PHOTO || propertyId == PROPERTY_ID_LOGO
+                        ? property.getByteValue() : null);
         if ((propertyValueList == null || propertyValueList.size() == 0)
                 && propertyBytes == null) {
             return;
         }
+        final Map<String, Collection<String>> paramMap = property.getParameterMap();
+        // Joining values is skipped for properties using the list only, e.g. PHOTO.
         final String propValue = (propertyValueList != null
+                && (PROPERTY_IDS_USING_VALUE_LIST & (1 << propertyId)) == 0
                 ? listToString(propertyValueList).trim()
                 : null);
 
-        if (propertyName.equals(VCardConstants.PROPERTY_VERSION)) {
+        switch (propertyId) {
+        case PROPERTY_ID_VERSION: {
             // vCard version. Ignore this.
-        } else if (propertyName.equals(VCardConstants.PROPERTY_FN)) {
+            break;
+        }
+        case PROPERTY_ID_FN: {
             mNameData.mFormatted = propValue;
-        } else if (propertyName.equals(VCardConstants.PROPERTY_NAME)) {
+            break;
+        }
+        case PROPERTY_ID_NAME: {
             // Only in vCard 3.0. Use this if FN doesn't exist though it is
             // required in vCard 3.0.
             if (TextUtils.isEmpty(mNameData.mFormatted)) {
                 mNameData.mFormatted = propValue;
             }
-        } else if (propertyName.equals(VCardConstants.PROPERTY_N)) {
+            break;
+        }
+        case PROPERTY_ID_N: {
             handleNProperty(propertyValueList, paramMap);
-        } else if (propertyName.equals(VCardConstants.PROPERTY_SORT_STRING)) {
+            break;
+        }
+        case PROPERTY_ID_SORT_STRING: {
             mNameData.mSortString = propValue;
-        } else if (propertyName.equals(VCardConstants.PROPERTY_NICKNAME)
-                || propertyName.equals(VCardConstants.ImportOnly.PROPERTY_X_NICKNAME)) {
+            break;
+        }
+        case PROPERTY_ID_NICKNAME:
+        case PROPERTY_ID_X_NICKNAME: {
             addNickName(propValue);
-        } else if (propertyName.equals(VCardConstants.PROPERTY_SOUND)) {
+            break;
+        }
+        case PROPERTY_ID_SOUND: {
             Collection<String> typeCollection = paramMap.get(VCardConstants.PARAM_TYPE);
             if (typeCollection != null
                     && typeCollection.contains(VCardConstants.PARAM_TYPE_X_IRMC_N)) {
@@ -2180,7 +2279,9 @@ public class VCardEntry {
             } else {
                 // Ignore this field since Android cannot understand what it is.
             }
-        } else if (propertyName.equals(VCardConstants.PROPERTY_ADR)) {
+            break;
+        }
+        case PROPERTY_ID_ADR: {
             boolean valuesAreAllEmpty = true;
             for (String value : propertyValueList) {
                 if (!TextUtils.isEmpty(value)) {
@@ -2195,34 +2296,28 @@ public class VCardEntry {
             int type = -1;
             String label = null;
             boolean isPrimary = false;
-            final Collection<String> typeCollection = paramMap.get(VCardConstants.PARAM_TYPE);
-            if (typeCollection != null) {
-                for (final String typeStringOrg : typeCollection) {
-                    final String typeStringUpperCase = typeStringOrg.toUpperCase();
-                    if (typeStringUpperCase.equals(VCardConstants.PARAM_TYPE_PREF)) {
+            final VCardTypeValues types = property.getTypeValues();
+            if (types != null) {
+                for (int i = 0; i < types.size(); i++) {
+                    final String typeStringOrg = types.get(i);
+                    final int bit = types.getBit(i);
+                    if (bit == VCardTypeTable.PREF) {
                         isPrimary = true;
-                    } else if (typeStringUpperCase.equals(VCardConstants.PARAM_TYPE_HOME)) {
+                    } else if (bit == VCardTypeTable.HOME) {
                         type = StructuredPostal.TYPE_HOME;
                         label = null;
-                    } else if (typeStringUpperCase.equals(VCardConstants.PARAM_TYPE_WORK)
-                            || typeStringUpperCase
-                                    .equalsIgnoreCase(VCardConstants.PARAM_EXTRA_TYPE_COMPANY)) {
+                    } else if (bit == VCardTypeTable.WORK || bit == VCardTypeTable.COMPANY) {
                         // "COMPANY" seems emitted by Windows Mobile, which is not
                         // specifically supported by vCard 2.1. We assume this is same
                         // as "WORK".
                         type = StructuredPostal.TYPE_WORK;
                         label = null;
-                    } else if (typeStringUpperCase.equals(VCardConstants.PARAM_ADR_TYPE_PARCEL)
-                            || typeStringUpperCase.equals(VCardConstants.PARAM_ADR_TYPE_DOM)
-                            || typeStringUpperCase.equals(VCardConstants.PARAM_ADR_TYPE_INTL)) {
+                    } else if (bit == VCardTypeTable.PARCEL || bit == VCardTypeTable.DOM
+                            || bit == VCardTypeTable.INTL) {
                         // We do not have any appropriate way to store this information.
                     } else if (type < 0) { // If no other type is specified before.
                         type = StructuredPostal.TYPE_CUSTOM;
-                        if (typeStringUpperCase.startsWith("X-")) { // If X- or x-
-                            label = typeStringOrg.substring(2);
-                        } else {
-                            label = typeStringOrg;
-                        }
+                        label = getCustomTypeLabel(typeStringOrg);
                         // {@link ContactsContract} has a {@link StructuredPostal.TYPE_OTHER}, so
                         // if the custom type is "other", map it from {@code TYPE_CUSTOM} to
                         // {@code TYPE_OTHER}.
@@ -2239,28 +2334,27 @@ public class VCardEntry {
             }
 
             addPostal(type, propertyValueList, label, isPrimary);
-        } else if (propertyName.equals(VCardConstants.PROPERTY_EMAIL)) {
+            break;
+        }
+        case PROPERTY_ID_EMAIL: {
             int type = -1;
             String label = null;
             boolean isPrimary = false;
-            final Collection<String> typeCollection = paramMap.get(VCardConstants.PARAM_TYPE);
-            if (typeCollection != null) {
-                for (final String typeStringOrg : typeCollection) {
-                    final String typeStringUpperCase = typeStringOrg.toUpperCase();
-                    if (typeStringUpperCase.equals(VCardConstants.PARAM_TYPE_PREF)) {
+            final VCardTypeValues types = property.getTypeValues();
+            if (types != null) {
+                for (int i = 0; i < types.size(); i++) {
+                    final String typeStringOrg = types.get(i);
+                    final int bit = types.getBit(i);
+                    if (bit == VCardTypeTable.PREF) {
                         isPrimary = true;
-                    } else if (typeStringUpperCase.equals(VCardConstants.PARAM_TYPE_HOME)) {
+                    } else if (bit == VCardTypeTable.HOME) {
                         type = Email.TYPE_HOME;
-                    } else if (typeStringUpperCase.equals(VCardConstants.PARAM_TYPE_WORK)) {
+                    } else if (bit == VCardTypeTable.WORK) {
                         type = Email.TYPE_WORK;
-                    } else if (typeStringUpperCase.equals(VCardConstants.PARAM_TYPE_CELL)) {
+                    } else if (bit == VCardTypeTable.CELL) {
                         type = Email.TYPE_MOBILE;
                     } else if (type < 0) { // If no other type is specified before
-                        if (typeStringUpperCase.startsWith("X-")) { // If X- or x-
-                            label = typeStringOrg.substring(2);
-                        } else {
-                            label = typeStringOrg;
-                        }
+                        label = getCustomTypeLabel(typeStringOrg);
                         type = Email.TYPE_CUSTOM;
                     }
                 }
@@ -2269,26 +2363,28 @@ public class VCardEntry {
                 type = Email.TYPE_OTHER;
             }
             addEmail(type, propValue, label, isPrimary);
-        } else if (propertyName.equals(VCardConstants.PROPERTY_ORG)) {
+            break;
+        }
+        case PROPERTY_ID_ORG: {
             // vCard specification does not specify other types.
             final int type = Organization.TYPE_WORK;
-            boolean isPrimary = false;
-            Collection<String> typeCollection = paramMap.get(VCardConstants.PARAM_TYPE);
-            if (typeCollection != null) {
-                for (String typeString : typeCollection) {
-                    if (typeString.equals(VCardConstants.PARAM_TYPE_PREF)) {
-                        isPrimary = true;
-                    }
-                }
-            }
+            final Collection<String> typeCollection = paramMap.get(VCardConstants.PARAM_TYPE);
+            final boolean isPrimary = (typeCollection != null
+                    && typeCollection.contains(VCardConstants.PARAM_TYPE_PREF));
             handleOrgValue(type, propertyValueList, paramMap, isPrimary);
-        } else if (propertyName.equals(VCardConstants.PROPERTY_TITLE)) {
+            break;
+        }
+        case PROPERTY_ID_TITLE: {
             handleTitleValue(propValue);
-        } else if (propertyName.equals(VCardConstants.PROPERTY_ROLE)) {
+            break;
+        }
+        case PROPERTY_ID_ROLE: {
             // This conflicts with TITLE. Ignore for now...
             // handleTitleValue(propValue);
-        } else if (propertyName.equals(VCardConstants.PROPERTY_PHOTO)
-                || propertyName.equals(VCardConstants.PROPERTY_LOGO)) {
+            break;
+        }
+        case PROPERTY_ID_PHOTO:
+        case PROPERTY_ID_LOGO: {
             Collection<String> paramMapValue = paramMap.get("VALUE");
             if (paramMapValue != null && paramMapValue.contains("URL")) {
                 // Currently we do not have appropriate example for testing this case.
@@ -2307,7 +2403,9 @@ public class VCardEntry {
                 }
                 addPhotoBytes(formatName, propertyBytes, isPrimary);
             }
-        } else if (propertyName.equals(VCardConstants.PROPERTY_TEL)) {
+            break;
+        }
+        case PROPERTY_ID_TEL: {
             String phoneNumber = null;
             boolean isSip = false;
             if (VCardConfig.isVersion40(mVCardType)) {
@@ -2328,16 +2426,14 @@ public class VCardEntry {
             }
 
             if (isSip) {
-                final Collection<String> typeCollection = paramMap.get(VCardConstants.PARAM_TYPE);
-                handleSipCase(propValue, typeCollection);
+                handleSipCase(propValue, property);
             } else {
                 if (propValue.length() == 0) {
                     return;
                 }
 
-                final Collection<String> typeCollection = paramMap.get(VCardConstants.PARAM_TYPE);
-                final Object typeObject = VCardUtils.getPhoneTypeFromStrings(typeCollection,
-                        phoneNumber);
+                final VCardTypeValues types = property.getTypeValues();
+                final Object typeObject = VCardUtils.getPhoneTypeFromStrings(types, phoneNumber);
                 final int type;
                 final String label;
                 if (typeObject instanceof Integer) {
@@ -2348,41 +2444,35 @@ public class VCardEntry {
                     label = typeObject.toString();
                 }
 
-                final boolean isPrimary;
-                if (typeCollection != null &&
-                        typeCollection.contains(VCardConstants.PARAM_TYPE_PREF)) {
-                    isPrimary = true;
-                } else {
-                    isPrimary = false;
-                }
-
+                final boolean isPrimary = (types != null
+                        && types.contains(VCardConstants.PARAM_TYPE_PREF));
                 addPhone(type, phoneNumber, label, isPrimary);
             }
-        } else if (propertyName.equals(VCardConstants.PROPERTY_X_SKYPE_PSTNNUMBER)) {
+            break;
+        }
+        case PROPERTY_ID_X_SKYPE_PSTNNUMBER: {
             // The phone number available via Skype.
-            Collection<String> typeCollection = paramMap.get(VCardConstants.PARAM_TYPE);
+            final Collection<String> typeCollection = paramMap.get(VCardConstants.PARAM_TYPE);
             final int type = Phone.TYPE_OTHER;
-            final boolean isPrimary;
-            if (typeCollection != null
-                    && typeCollection.contains(VCardConstants.PARAM_TYPE_PREF)) {
-                isPrimary = true;
-            } else {
-                isPrimary = false;
-            }
+            final boolean isPrimary = (typeCollection != null
+                    && typeCollection.contains(VCardConstants.PARAM_TYPE_PREF));
             addPhone(type, propValue, null, isPrimary);
-        } else if (sImMap.containsKey(propertyName)) {
+            break;
+        }
+        case PROPERTY_ID_IM: {
             final int protocol = sImMap.get(propertyName);
             boolean isPrimary = false;
             int type = -1;
-            final Collection<String> typeCollection = paramMap.get(VCardConstants.PARAM_TYPE);
-            if (typeCollection != null) {
-                for (String typeString : typeCollection) {
-                    if (typeString.equals(VCardConstants.PARAM_TYPE_PREF)) {
+            final VCardTypeValues types = property.getTypeValues();
+            if (types != null) {
+                for (int i = 0; i < types.size(); i++) {
+                    if (types.get(i).equals(VCardConstants.PARAM_TYPE_PREF)) {
                         isPrimary = true;
                     } else if (type < 0) {
-                        if (typeString.equalsIgnoreCase(VCardConstants.PARAM_TYPE_HOME)) {
+                        final int bit = types.getBit(i);
+                        if (bit == VCardTypeTable.HOME) {
                             type = Im.TYPE_HOME;
-                        } else if (typeString.equalsIgnoreCase(VCardConstants.PARAM_TYPE_WORK)) {
+                        } else if (bit == VCardTypeTable.WORK) {
                             type = Im.TYPE_WORK;
                         }
                     }
@@ -2392,54 +2482,84 @@ public class VCardEntry {
                 type = Im.TYPE_HOME;
             }
             addIm(protocol, null, propValue, type, isPrimary);
-        } else if (propertyName.equals(VCardConstants.PROPERTY_NOTE)) {
+            break;
+        }
+        case PROPERTY_ID_NOTE: {
             addNote(propValue);
-        } else if (propertyName.equals(VCardConstants.PROPERTY_URL)) {
+            break;
+        }
+        case PROPERTY_ID_URL: {
             if (mWebsiteList == null) {
                 mWebsiteList = new ArrayList<WebsiteData>(1);
             }
             mWebsiteList.add(new WebsiteData(propValue));
-        } else if (propertyName.equals(VCardConstants.PROPERTY_BDAY)) {
+            break;
+        }
+        case PROPERTY_ID_BDAY: {
             mBirthday = new BirthdayData(propValue);
-        } else if (propertyName.equals(VCardConstants.PROPERTY_ANNIVERSARY)) {
+            break;
+        }
+        case PROPERTY_ID_ANNIVERSARY: {
             mAnniversary = new AnniversaryData(propValue);
-        } else if (propertyName.equals(VCardConstants.PROPERTY_X_PHONETIC_FIRST_NAME)) {
+            break;
+        }
+        case PROPERTY_ID_X_PHONETIC_FIRST_NAME: {
             mNameData.mPhoneticGiven = propValue;
-        } else if (propertyName.equals(VCardConstants.PROPERTY_X_PHONETIC_MIDDLE_NAME)) {
+            break;
+        }
+        case PROPERTY_ID_X_PHONETIC_MIDDLE_NAME: {
             mNameData.mPhoneticMiddle = propValue;
-        } else if (propertyName.equals(VCardConstants.PROPERTY_X_PHONETIC_LAST_NAME)) {
+            break;
+        }
+        case PROPERTY_ID_X_PHONETIC_LAST_NAME: {
             mNameData.mPhoneticFamily = propValue;
-        } else if (propertyName.equals(VCardConstants.PROPERTY_IMPP)) {
+            break;
+        }
+        case PROPERTY_ID_IMPP: {
             // See also RFC 4770 (for vCard 3.0)
             if (propValue.startsWith("sip:")) {
-                final Collection<String> typeCollection = paramMap.get(VCardConstants.PARAM_TYPE);
-                handleSipCase(propValue, typeCollection);
+                handleSipCase(propValue, property);
             }
-        } else if (propertyName.equals(VCardConstants.PROPERTY_X_SIP)) {
+            break;
+        }
+        case PROPERTY_ID_X_SIP: {
             if (!TextUtils.isEmpty(propValue)) {
-                final Collection<String> typeCollection = paramMap.get(VCardConstants.PARAM_TYPE);
-                handleSipCase(propValue, typeCollection);
+                handleSipCase(propValue, property);
             }
-        } else if (propertyName.equals(VCardConstants.PROPERTY_X_ANDROID_CUSTOM)) {
+            break;
+        }
+        case PROPERTY_ID_X_ANDROID_CUSTOM: {
             final List<String> customPropertyList = VCardUtils.constructListFromValue(propValue,
                     mVCardType);
             handleAndroidCustomProperty(customPropertyList);
-        } else if (propertyName.toUpperCase().startsWith("X-")) {
+            break;
+        }
+        case PROPERTY_ID_UNKNOWN_X: {
             // Catch all for X- properties. The caller can decide what to do with these.
             if (mUnknownXData == null) {
                 mUnknownXData = new ArrayList<Pair<String, String>>();
             }
             mUnknownXData.add(new Pair<String, String>(propertyName, propValue));
-        } else {
+            break;
+        }
         }
         // Be careful when adding some logic here, as some blocks above may use "return".
     }
 
+    private static int getPropertyId(String propertyName) {
+        final Integer propertyId = sPropertyIdMap.get(propertyName);
+        if (propertyId != null) {
+            return propertyId;
+        }
+        return (propertyName.regionMatches(true, 0, "X-", 0, 2)
+                ? PROPERTY_ID_UNKNOWN_X : PROPERTY_ID_UNKNOWN);
+    }
+
     /**
      * @param propValue may contain "sip:" at the beginning.
-     * @param typeCollection
+     * @param property The property giving the TYPE parameter.
      */
-    private void handleSipCase(String propValue, Collection<String> typeCollection) {
+    private void handleSipCase(String propValue, VCardProperty property) {
         if (TextUtils.isEmpty(propValue)) {
             return;
         }
@@ -2453,21 +2573,19 @@ public class VCardEntry {
         int type = -1;
         String label = null;
         boolean isPrimary = false;
-        if (typeCollection != null) {
-            for (final String typeStringOrg : typeCollection) {
-                final String typeStringUpperCase = typeStringOrg.toUpperCase();
-                if (typeStringUpperCase.equals(VCardConstants.PARAM_TYPE_PREF)) {
+        final VCardTypeValues types = property.getTypeValues();
+        if (types != null) {
+            for (int i = 0; i < types.size(); i++) {
+                final String typeStringOrg = types.get(i);
+                final int bit = types.getBit(i);
+                if (bit == VCardTypeTable.PREF) {
                     isPrimary = true;
-                } else if (typeStringUpperCase.equals(VCardConstants.PARAM_TYPE_HOME)) {
+                } else if (bit == VCardTypeTable.HOME) {
                     type = SipAddress.TYPE_HOME;
-                } else if (typeStringUpperCase.equals(VCardConstants.PARAM_TYPE_WORK)) {
+                } else if (bit == VCardTypeTable.WORK) {
                     type = SipAddress.TYPE_WORK;
                 } else if (type < 0) { // If no other type is specified before
-                    if (typeStringUpperCase.startsWith("X-")) { // If X- or x-
-                        label = typeStringOrg.substring(2);
-                    } else {
-                        label = typeStringOrg;
-                    }
+                    label = getCustomTypeLabel(typeStringOrg);
                     type = SipAddress.TYPE_CUSTOM;
                 }
             }
@@ -2478,6 +2596,16 @@ public class VCardEntry {
         addSip(propValue, type, label, isPrimary);
     }
 
+    /**
+     * @return The value of TYPE without "X-" at its beginning.
+     */
+    private static String getCustomTypeLabel(String typeString) {
+        if (typeString.toUpperCase().startsWith("X-")) { // If X- or x-
+            return typeString.substring(2);
+        }
+        return typeString;
+    }
+
     public void addChild(VCardEntry child) {
         if (mChildren == null) {
             mChildren = new ArrayList<VCardEntry>();
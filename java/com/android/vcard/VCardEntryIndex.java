@@ -0,0 +1,273 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import com.android.vcard.exception.VCardException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * <p>
+ * Byte offsets of the top-level entries in a vCard file, built by one scan of the lines of
+ * the file without parsing properties or decoding values.
+ * </p>
+ * <p>
+ * Each entry also has its version and a hash of its FN (display name), so that callers can
+ * show or deduplicate entries before parsing them. Entries are parsed on demand with
+ * {@link #parseAt(VCardParser, int)} or {@link #parseRange(VCardParser, int, int)},
+ * which read only the bytes of the requested entries.
+ * </p>
+ * <code>
+ * VCardEntryIndex index = VCardEntryIndex.build(channel);
+ * VCardParser parser = new VCardParser_Auto();
+ * parser.addInterpreter(constructor);
+ * index.parseRange(parser, 150000, 150050);
+ * </code>
+ */
+public class VCardEntryIndex {
+    private static final int INITIAL_CAPACITY = 64;
+
+    private final FileChannel mChannel;
+    private final ByteBuffer mBuffer;
+    private final long mBaseOffset;
+
+    private int mSize;
+    private long[] mOffsets = new long[INITIAL_CAPACITY];
+    private long[] mLengths = new long[INITIAL_CAPACITY];
+    private byte[] mVersions = new byte[INITIAL_CAPACITY];
+    private int[] mDisplayNameHashes = new int[INITIAL_CAPACITY];
+
+    private VCardEntryIndex(FileChannel channel, ByteBuffer buffer, long baseOffset) {
+        mChannel = channel;
+        mBuffer = buffer;
+        mBaseOffset = baseOffset;
+    }
+
+    /**
+     * Indexes entries from the current position of the channel to its end. The channel must
+     * stay open while entries are parsed via the returned index.
+     */
+    public static VCardEntryIndex build(FileChannel channel) throws IOException {
+        final VCardEntryIndex index = new VCardEntryIndex(channel, null, channel.position());
+        index.scan(new VCardParserImpl_V21.CustomBufferedReader(channel));
+        return index;
+    }
+
+    /**
+     * Indexes entries between the position and the limit of the buffer. Offsets are relative
+     * to the position. The buffer must not be modified while entries are parsed via the
+     * returned index.
+     */
+    public static VCardEntryIndex build(ByteBuffer buffer) throws IOException {
+        final ByteBuffer source = buffer.slice();
+        final VCardEntryIndex index = new VCardEntryIndex(null, source, 0);
+        index.scan(new VCardParserImpl_V21.CustomBufferedReader(source));
+        return index;
+    }
+
+    private void scan(VCardParserImpl_V21.CustomBufferedReader reader) throws IOException {
+        int depth = 0;
+        long start = 0;
+        int version = -1;
+        StringBuilder displayName = null;
+        boolean inDisplayName = false;
+        while (true) {
+            final long lineStart = reader.getPosition();
+            final String line = reader.readLine();
+            if (line == null) {
+                break;
+            }
+            if (inDisplayName) {
+                if (line.length() > 0 && (line.charAt(0) == ' ' || line.charAt(0) == '\t')) {
+                    // RFC 2425 line folding.
+                    displayName.append(line, 1, line.length());
+                    continue;
+                }
+                inDisplayName = false;
+            }
+            final int colon = line.indexOf(':');
+            if (colon < 0) {
+                continue;
+            }
+            final String name = getPropertyName(line, colon);
+            if (name == VCardConstants.PROPERTY_BEGIN) {
+                if (isVCard(line, colon)) {
+                    if (depth == 0) {
+                        start = lineStart;
+                        version = -1;
+                        displayName = null;
+                    }
+                    depth++;
+                }
+            } else if (name == VCardConstants.PROPERTY_END) {
+                if (isVCard(line, colon) && depth > 0) {
+                    depth--;
+                    if (depth == 0) {
+                        add(start, reader.getPosition() - start, version,
+                                displayName != null ? displayName.toString().hashCode() : 0);
+                    }
+                }
+            } else if (depth == 1) {
+                if (name == VCardConstants.PROPERTY_VERSION) {
+                    version = parseVersion(line.substring(colon + 1).trim());
+                } else if (name == VCardConstants.PROPERTY_FN && displayName == null) {
+                    displayName = new StringBuilder(line.length() - colon - 1);
+                    displayName.append(line, colon + 1, line.length());
+                    inDisplayName = true;
+                }
+            }
+        }
+    }
+
+    /**
+     * @return The canonical upper-case name of the property in the line if known, ignoring
+     * its group and parameters.
+     */
+    private static String getPropertyName(String line, int colon) {
+        int end = line.indexOf(';');
+        if (end < 0 || end > colon) {
+            end = colon;
+        }
+        final int start = line.lastIndexOf('.', end - 1) + 1;
+        return VCardNameTable.lookup(line, start, end);
+    }
+
+    private static boolean isVCard(String line, int colon) {
+        return line.substring(colon + 1).trim().equalsIgnoreCase("VCARD");
+    }
+
+    private static int parseVersion(String version) {
+        if (VCardConstants.VERSION_V21.equals(version)) {
+            return VCardConfig.VERSION_21;
+        } else if (VCardConstants.VERSION_V30.equals(version)) {
+            return VCardConfig.VERSION_30;
+        } else if (VCardConstants.VERSION_V40.equals(version)) {
+            return VCardConfig.VERSION_40;
+        }
+        return -1;
+    }
+
+    private void add(long offset, long length, int version, int displayNameHash) {
+        if (mSize == mOffsets.length) {
+            final int capacity = mSize * 2;
+            final long[] offsets = new long[capacity];
+            final long[] lengths = new long[capacity];
+            final byte[] versions = new byte[capacity];
+            final int[] displayNameHashes = new int[capacity];
+            System.arraycopy(mOffsets, 0, offsets, 0, mSize);
+            System.arraycopy(mLengths, 0, lengths, 0, mSize);
+            System.arraycopy(mVersions, 0, versions, 0, mSize);
+            System.arraycopy(mDisplayNameHashes, 0, displayNameHashes, 0, mSize);
+            mOffsets = offsets;
+            mLengths = lengths;
+            mVersions = versions;
+            mDisplayNameHashes = displayNameHashes;
+        }
+        mOffsets[mSize] = offset;
+        mLengths[mSize] = length;
+        mVersions[mSize] = (byte) version;
+        mDisplayNameHashes[mSize] = displayNameHash;
+        mSize++;
+    }
+
+    /**
+     * @return The number of top-level entries.
+     */
+    public int size() {
+        return mSize;
+    }
+
+    /**
+     * @return The offset of "BEGIN:VCARD" of the entry. For a channel, the offset in the
+     * channel. For a buffer, the offset from the position of the buffer given to
+     * {@link #build(ByteBuffer)}.
+     */
+    public long getOffset(int index) {
+        checkIndex(index);
+        return mBaseOffset + mOffsets[index];
+    }
+
+    /**
+     * @return The number of bytes from "BEGIN:VCARD" to the line terminator of "END:VCARD".
+     */
+    public long getLength(int index) {
+        checkIndex(index);
+        return mLengths[index];
+    }
+
+    /**
+     * @return {@link VCardConfig#VERSION_21}, {@link VCardConfig#VERSION_30},
+     * {@link VCardConfig#VERSION_40}, or -1 when the entry has no known VERSION.
+     */
+    public int getVersion(int index) {
+        checkIndex(index);
+        return mVersions[index];
+    }
+
+    /**
+     * @return {@link String#hashCode()} of the FN value as written in the file (unfolded but
+     * not decoded), or 0 when the entry has no FN.
+     */
+    public int getDisplayNameHash(int index) {
+        checkIndex(index);
+        return mDisplayNameHashes[index];
+    }
+
+    /**
+     * Parses the entry at the given index. Equivalent to parseRange(parser, index, index + 1).
+     */
+    public void parseAt(VCardParser parser, int index) throws IOException, VCardException {
+        parseRange(parser, index, index + 1);
+    }
+
+    /**
+     * Parses the entries in [from, to) with the given parser, reading only their bytes.
+     * Use {@link VCardParser_Auto} when entries may have different versions.
+     */
+    public void parseRange(VCardParser parser, int from, int to)
+            throws IOException, VCardException {
+        if (from < 0 || to > mSize || from > to) {
+            throw new IndexOutOfBoundsException(
+                    "Invalid range [" + from + ", " + to + ") for size " + mSize);
+        }
+        if (from == to) {
+            return;
+        }
+        final long start = mOffsets[from];
+        final long length = mOffsets[to - 1] + mLengths[to - 1] - start;
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("Range too large to be parsed at once: " + length + " bytes");
+        }
+        final ByteBuffer region;
+        if (mChannel != null) {
+            region = mChannel.map(FileChannel.MapMode.READ_ONLY, mBaseOffset + start, length);
+        } else {
+            final ByteBuffer duplicate = mBuffer.duplicate();
+            duplicate.limit((int) (start + length));
+            duplicate.position((int) start);
+            region = duplicate.slice();
+        }
+        parser.parse(region);
+    }
+
+    private void checkIndex(int index) {
+        if (index < 0 || index >= mSize) {
+            throw new IndexOutOfBoundsException("Index " + index + " for size " + mSize);
+        }
+    }
+}
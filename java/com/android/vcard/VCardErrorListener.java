@@ -0,0 +1,38 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import com.android.vcard.exception.VCardException;
+
+/**
+ * <p>
+ * Receives errors from which a parser has recovered, via
+ * {@link VCardParser#setErrorListener(VCardErrorListener)}.
+ * </p>
+ * <p>
+ * Called in the parsing thread after the entry containing the error has been ended with
+ * {@link VCardInterpreter#onEntryEnded()}. The lines up to the end of the entry are skipped,
+ * and parsing continues from the next top-level entry.
+ * </p>
+ */
+public interface VCardErrorListener {
+    /**
+     * @param exception The error, which would have stopped parsing without this listener.
+     * @param position The offset in bytes from the beginning of the input to the line at which
+     * the item (e.g. a property) containing the error starts.
+     */
+    void onError(VCardException exception, long position);
+}
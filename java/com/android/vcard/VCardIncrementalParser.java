@@ -0,0 +1,208 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import com.android.vcard.VCardParserImpl_V21.CustomBufferedReader;
+import com.android.vcard.exception.VCardCanceledException;
+import com.android.vcard.exception.VCardException;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * Push-style vCard parser. Callers give bytes as they arrive (e.g. from a socket or
+ * a Bluetooth transfer) with {@link #feed(ByteBuffer)}, and {@link VCardInterpreter} events
+ * are emitted as soon as the bytes of each entry boundary or property are available,
+ * without waiting for the whole input or blocking on it.
+ * </p>
+ * <p>
+ * Bytes not consumed yet are kept by this object, so buffers given to
+ * {@link #feed(ByteBuffer)} may be reused right after the call. A property is emitted once
+ * the line after it has arrived too, as the line may continue the value. When a property
+ * does not complete within the bytes fed so far, it is parsed again from its beginning after
+ * at least as many bytes as buffered have been fed, which keeps the total work linear in
+ * the size of the input.
+ * </p>
+ * <p>
+ * This class uses the same parser implementation as {@link VCardParser_V21},
+ * {@link VCardParser_V30}, and {@link VCardParser_V40}, chosen by the vCard type given to
+ * the constructor.
+ * </p>
+ * <code>
+ * VCardIncrementalParser parser = new VCardIncrementalParser(VCardConfig.VCARD_TYPE_DEFAULT);
+ * parser.addInterpreter(constructor);
+ * while ((count = channel.read(buffer)) >= 0) {
+ *     buffer.flip();
+ *     parser.feed(buffer);
+ *     buffer.clear();
+ * }
+ * parser.endOfInput();
+ * </code>
+ */
+public class VCardIncrementalParser {
+    private final VCardParserImpl_V21 mParserImpl;
+    private final CustomBufferedReader mReader = new CustomBufferedReader();
+    private final List<VCardInterpreter> mInterpreterList = new ArrayList<VCardInterpreter>();
+
+    /**
+     * The number of buffered bytes needed before parsing is tried again.
+     */
+    private int mRequiredBytes;
+
+    private boolean mStarted;
+    private boolean mEnded;
+
+    public VCardIncrementalParser(int vcardType) {
+        if (VCardConfig.isVersion40(vcardType)) {
+            mParserImpl = new VCardParserImpl_V40(vcardType);
+        } else if (VCardConfig.isVersion30(vcardType)) {
+            mParserImpl = new VCardParserImpl_V30(vcardType);
+        } else {
+            mParserImpl = new VCardParserImpl_V21(vcardType);
+        }
+        mParserImpl.setReader(mReader);
+    }
+
+    public void addInterpreter(VCardInterpreter interpreter) {
+        mInterpreterList.add(interpreter);
+        mParserImpl.addInterpreter(interpreter);
+    }
+
+    /**
+     * See {@link VCardParser#setBinarySink(VCardBinarySink)}. As a value may be parsed more than
+     * once, its bytes are kept by this object until the value completes, and only then written
+     * to a value created by the sink.
+     */
+    public void setBinarySink(VCardBinarySink sink) {
+        mParserImpl.setBinarySink(sink);
+    }
+
+    /**
+     * See {@link VCardParser#setReuseProperties(boolean)}.
+     */
+    public void setReuseProperties(boolean reuseProperties) {
+        mParserImpl.setReuseProperties(reuseProperties);
+    }
+
+    /**
+     * See {@link VCardParser#setMetrics(VCardParserMetrics)}.
+     */
+    public void setMetrics(VCardParserMetrics metrics) {
+        mParserImpl.setMetrics(metrics);
+    }
+
+    /**
+     * See {@link VCardParser#setPropertyFilter(VCardPropertyFilter)}.
+     */
+    public void setPropertyFilter(VCardPropertyFilter filter) {
+        mParserImpl.setPropertyFilter(filter);
+    }
+
+    /**
+     * See {@link VCardParser#setLimits(VCardParseLimits)}.
+     */
+    public void setLimits(VCardParseLimits limits) {
+        mParserImpl.setLimits(limits);
+    }
+
+    /**
+     * See {@link VCardParser#setErrorListener(VCardErrorListener)}.
+     */
+    public void setErrorListener(VCardErrorListener listener) {
+        mParserImpl.setErrorListener(listener);
+    }
+
+    /**
+     * Makes {@link #feed(ByteBuffer)} and {@link #endOfInput()} throw
+     * {@link VCardCanceledException}. May be called from any thread.
+     */
+    public void cancel() {
+        mParserImpl.cancel();
+    }
+
+    /**
+     * Parses the remaining bytes of the buffer as far as possible, emitting events for
+     * the entries and properties completed by them. The position of the buffer is moved to
+     * its limit.
+     */
+    public void feed(ByteBuffer data) throws IOException, VCardException {
+        if (data == null) {
+            throw new NullPointerException("ByteBuffer must not be null.");
+        }
+        if (mEnded) {
+            throw new IllegalStateException("endOfInput() has already been called.");
+        }
+        start();
+        mReader.feed(data);
+        if (mReader.getAvailableBytes() >= mRequiredBytes) {
+            parseAvailable();
+        }
+    }
+
+    /**
+     * Parses the rest of the bytes fed so far and emits {@link VCardInterpreter#onVCardEnded()}.
+     * The last line does not need a line terminator. Temporary files of binary values spilled
+     * under {@link VCardParseLimits#setSpillThreshold} are deleted after that.
+     */
+    public void endOfInput() throws IOException, VCardException {
+        if (mEnded) {
+            return;
+        }
+        start();
+        mEnded = true;
+        try {
+            mReader.endOfInput();
+            parseAvailable();
+            for (VCardInterpreter interpreter : mInterpreterList) {
+                interpreter.onVCardEnded();
+            }
+        } finally {
+            mParserImpl.releaseSpilledValues();
+        }
+    }
+
+    private void start() {
+        if (mStarted) {
+            return;
+        }
+        mStarted = true;
+        for (VCardInterpreter interpreter : mInterpreterList) {
+            interpreter.onVCardStarted();
+        }
+    }
+
+    private void parseAvailable() throws IOException, VCardException {
+        mRequiredBytes = 0;
+        while (true) {
+            // Each step emits its events only after reading all the lines it needs, so going
+            // back to the mark never undoes an emitted event.
+            mReader.mark();
+            try {
+                if (!mParserImpl.parseNext()) {
+                    return;
+                }
+            } catch (CustomBufferedReader.NeedMoreInputException e) {
+                mReader.reset();
+                final int available = mReader.getAvailableBytes();
+                mRequiredBytes = Math.max(available * 2, available + 1);
+                return;
+            }
+        }
+    }
+}
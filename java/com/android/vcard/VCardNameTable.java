@@ -0,0 +1,254 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * <p>
+ * Table of property names, parameter names, and parameter values known to this library.
+ * </p>
+ * <p>
+ * Parsers look up a region of a line in one case-insensitive pass and get the canonical
+ * upper-case String (the same instance as the constant in {@link VCardConstants}), without
+ * creating a substring or upper-casing it. Names not in the table fall back to
+ * {@link String#toUpperCase()}.
+ * </p>
+ * <p>
+ * The same pass also gives the id of a parameter name and the {@link VCardTypeTable} bit of
+ * a TYPE value, which {@link VCardProperty} stores instead of comparing Strings.
+ * </p>
+ * @hide
+ */
+/* package */ final class VCardNameTable {
+    public static final int PARAM_ID_UNKNOWN = 0;
+    public static final int PARAM_ID_TYPE = 1;
+    public static final int PARAM_ID_VALUE = 2;
+    public static final int PARAM_ID_CHARSET = 3;
+    public static final int PARAM_ID_ENCODING = 4;
+    public static final int PARAM_ID_LANGUAGE = 5;
+    public static final int PARAM_ID_SORT_AS = 6;
+
+    /**
+     * Parameter names indexed by their ids.
+     */
+    private static final String[] sParameterNames = {
+        null,
+        VCardConstants.PARAM_TYPE,
+        VCardConstants.PARAM_VALUE,
+        VCardConstants.PARAM_CHARSET,
+        VCardConstants.PARAM_ENCODING,
+        VCardConstants.PARAM_LANGUAGE,
+        VCardConstants.PARAM_SORT_AS,
+    };
+
+    // Must be a power of two, large enough to keep the table sparse.
+    private static final int TABLE_SIZE = 512;
+    private static final String[] sTable = new String[TABLE_SIZE];
+    private static final int[] sParameterIds = new int[TABLE_SIZE];
+    private static final int[] sTypeBits = new int[TABLE_SIZE];
+
+    static {
+        for (String name : Arrays.asList(
+                VCardConstants.PROPERTY_BEGIN, VCardConstants.PROPERTY_VERSION,
+                VCardConstants.PROPERTY_N, VCardConstants.PROPERTY_FN,
+                VCardConstants.PROPERTY_ADR, VCardConstants.PROPERTY_EMAIL,
+                VCardConstants.PROPERTY_NOTE, VCardConstants.PROPERTY_ORG,
+                VCardConstants.PROPERTY_SOUND, VCardConstants.PROPERTY_TEL,
+                VCardConstants.PROPERTY_TITLE, VCardConstants.PROPERTY_ROLE,
+                VCardConstants.PROPERTY_PHOTO, VCardConstants.PROPERTY_LOGO,
+                VCardConstants.PROPERTY_URL, VCardConstants.PROPERTY_BDAY,
+                VCardConstants.PROPERTY_ANNIVERSARY, VCardConstants.PROPERTY_NAME,
+                VCardConstants.PROPERTY_NICKNAME, VCardConstants.PROPERTY_SORT_STRING,
+                VCardConstants.PROPERTY_IMPP, VCardConstants.PROPERTY_END,
+                VCardConstants.PROPERTY_REV, VCardConstants.PROPERTY_AGENT,
+                VCardConstants.PROPERTY_GENDER, VCardConstants.PROPERTY_XML,
+                VCardConstants.PROPERTY_FBURL, VCardConstants.PROPERTY_PRODID,
+                VCardConstants.PROPERTY_RELATED, VCardConstants.PROPERTY_CATEGORIES,
+                VCardConstants.PROPERTY_CLIENTPIDMAP, VCardConstants.PROPERTY_CALURI,
+                VCardConstants.PROPERTY_X_SIP,
+                VCardConstants.PROPERTY_X_PHONETIC_FIRST_NAME,
+                VCardConstants.PROPERTY_X_PHONETIC_MIDDLE_NAME,
+                VCardConstants.PROPERTY_X_PHONETIC_LAST_NAME,
+                VCardConstants.PROPERTY_X_AIM, VCardConstants.PROPERTY_X_MSN,
+                VCardConstants.PROPERTY_X_YAHOO, VCardConstants.PROPERTY_X_ICQ,
+                VCardConstants.PROPERTY_X_JABBER, VCardConstants.PROPERTY_X_GOOGLE_TALK,
+                VCardConstants.PROPERTY_X_SKYPE_USERNAME, VCardConstants.PROPERTY_X_QQ,
+                VCardConstants.PROPERTY_X_NETMEETING,
+                VCardConstants.PROPERTY_X_SKYPE_PSTNNUMBER,
+                VCardConstants.PROPERTY_X_ANDROID_CUSTOM, VCardConstants.PROPERTY_X_CLASS,
+                VCardConstants.PROPERTY_X_REDUCTION, VCardConstants.PROPERTY_X_NO,
+                VCardConstants.PROPERTY_X_DCM_HMN_MODE,
+                VCardConstants.ImportOnly.PROPERTY_X_NICKNAME,
+                VCardConstants.PARAM_TYPE, VCardConstants.PARAM_VALUE,
+                VCardConstants.PARAM_CHARSET, VCardConstants.PARAM_ENCODING,
+                VCardConstants.PARAM_LANGUAGE, VCardConstants.PARAM_SORT_AS,
+                VCardConstants.PARAM_TYPE_X_IRMC_N,
+                VCardConstants.PARAM_PHONE_EXTRA_TYPE_CALLBACK,
+                VCardConstants.PARAM_PHONE_EXTRA_TYPE_RADIO,
+                VCardConstants.PARAM_PHONE_EXTRA_TYPE_TTY_TDD,
+                VCardConstants.PARAM_PHONE_EXTRA_TYPE_ASSISTANT,
+                VCardConstants.PARAM_PHONE_EXTRA_TYPE_COMPANY_MAIN,
+                VCardConstants.PARAM_PHONE_EXTRA_TYPE_OTHER,
+                VCardConstants.PARAM_EXTRA_TYPE_COMPANY)) {
+            add(name);
+        }
+        addAll(VCardParser_V21.sKnownPropertyNameSet);
+        addAll(VCardParser_V21.sKnownTypeSet);
+        addAll(VCardParser_V21.sKnownValueSet);
+        addAll(VCardParser_V21.sAvailableEncoding);
+        addAll(VCardParser_V30.sKnownPropertyNameSet);
+        addAll(VCardParser_V30.sAcceptableEncoding);
+        addAll(VCardParser_V40.sKnownPropertyNameSet);
+        addAll(VCardParser_V40.sAcceptableEncoding);
+        for (int id = 1; id < sParameterNames.length; id++) {
+            sParameterIds[add(sParameterNames[id])] = id;
+        }
+        for (int i = 0; i < VCardTypeTable.getCount(); i++) {
+            final int bit = 1 << i;
+            sTypeBits[add(VCardTypeTable.getName(bit))] = bit;
+        }
+    }
+
+    private VCardNameTable() {
+    }
+
+    private static void addAll(Collection<String> names) {
+        for (String name : names) {
+            add(name);
+        }
+    }
+
+    /**
+     * @return The slot of the name.
+     */
+    private static int add(String name) {
+        int index = hash(name, 0, name.length()) & (TABLE_SIZE - 1);
+        while (sTable[index] != null) {
+            if (sTable[index].equals(name)) {
+                return index;
+            }
+            index = (index + 1) & (TABLE_SIZE - 1);
+        }
+        sTable[index] = name;
+        return index;
+    }
+
+    private static int hash(String str, int start, int end) {
+        int hash = 0;
+        for (int i = start; i < end; i++) {
+            hash = 31 * hash + toUpperAscii(str.charAt(i));
+        }
+        return hash ^ (hash >>> 16);
+    }
+
+    private static char toUpperAscii(char ch) {
+        return (ch >= 'a' && ch <= 'z') ? (char) (ch - ('a' - 'A')) : ch;
+    }
+
+    /**
+     * @return The slot of str[start, end) compared case-insensitively, or -1 when it is not
+     * a known name. Pass it to {@link #getName(int)} and {@link #getTypeBit(int)}.
+     */
+    public static int lookupSlot(String str, int start, int end) {
+        final int length = end - start;
+        int index = hash(str, start, end) & (TABLE_SIZE - 1);
+        String candidate;
+        while ((candidate = sTable[index]) != null) {
+            if (candidate.length() == length
+                    && candidate.regionMatches(true, 0, str, start, length)) {
+                return index;
+            }
+            index = (index + 1) & (TABLE_SIZE - 1);
+        }
+        return -1;
+    }
+
+    /**
+     * @return The canonical upper-case String in the slot.
+     */
+    public static String getName(int slot) {
+        return sTable[slot];
+    }
+
+    /**
+     * @return The {@link VCardTypeTable} bit of the name in the slot, or 0.
+     */
+    public static int getTypeBit(int slot) {
+        return sTypeBits[slot];
+    }
+
+    /**
+     * @return The {@link VCardTypeTable} bit of the value compared case-insensitively, or 0.
+     */
+    public static int getTypeBit(String value) {
+        final int slot = lookupSlot(value, 0, value.length());
+        return (slot >= 0 ? sTypeBits[slot] : 0);
+    }
+
+    /**
+     * @return The id of the parameter name, or {@link #PARAM_ID_UNKNOWN}. Unlike the other
+     * lookups, the name must be in upper case, as parameter names of {@link VCardProperty}
+     * are compared case-sensitively.
+     */
+    public static int getParameterId(String name) {
+        // Parsers and interpreters mostly give the constants themselves.
+        for (int id = 1; id < sParameterNames.length; id++) {
+            if (sParameterNames[id] == name) {
+                return id;
+            }
+        }
+        final int slot = lookupSlot(name, 0, name.length());
+        if (slot < 0 || sParameterIds[slot] == PARAM_ID_UNKNOWN || !sTable[slot].equals(name)) {
+            return PARAM_ID_UNKNOWN;
+        }
+        return sParameterIds[slot];
+    }
+
+    /**
+     * @return The canonical upper-case String for str[start, end), or null when it is not
+     * a known name.
+     */
+    public static String lookup(String str, int start, int end) {
+        final int slot = lookupSlot(str, start, end);
+        return (slot >= 0 ? sTable[slot] : null);
+    }
+
+    /**
+     * @return The canonical String for str[start, end) if known, or the substring as is.
+     */
+    public static String canonicalize(String str, int start, int end) {
+        final String canonical = lookup(str, start, end);
+        return canonical != null ? canonical : str.substring(start, end);
+    }
+
+    /**
+     * Same as str.substring(start, end).toUpperCase(), without allocation for known names.
+     */
+    public static String toUpperCase(String str, int start, int end) {
+        final String canonical = lookup(str, start, end);
+        return canonical != null ? canonical : str.substring(start, end).toUpperCase();
+    }
+
+    /**
+     * Same as str.toUpperCase(), without allocation for known names.
+     */
+    public static String toUpperCase(String str) {
+        final String canonical = lookup(str, 0, str.length());
+        return canonical != null ? canonical : str.toUpperCase();
+    }
+}
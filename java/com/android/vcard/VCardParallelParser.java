@@ -0,0 +1,607 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import android.util.Log;
+
+import com.android.vcard.exception.VCardException;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * <p>
+ * vCard parser splitting its input at the boundaries of top-level entries
+ * ("BEGIN:VCARD" ... "END:VCARD") and parsing the chunks concurrently.
+ * Each chunk is parsed by its own {@link VCardParser_V21}, {@link VCardParser_V30}, or
+ * {@link VCardParser_V40}, chosen by the vCard type given to the constructor.
+ * </p>
+ * <p>
+ * Registered {@link VCardInterpreter} objects are always called from the thread calling
+ * parse(), so they do not need to be thread-safe. By default entries are delivered in the
+ * order they appear in the source. When {@link #setOrdered(boolean)} is set to false,
+ * entries in each chunk are delivered as soon as the chunk is parsed.
+ * </p>
+ * <p>
+ * Input given as an InputStream is read into memory before being split. Use
+ * {@link #parse(ByteBuffer)}, {@link #parse(FileChannel)}, or {@link #parse(java.io.File)}
+ * for large inputs.
+ * </p>
+ */
+public final class VCardParallelParser extends VCardParser {
+    private static final String LOG_TAG = VCardConstants.LOG_TAG;
+
+    /**
+     * A chunk is closed at the first entry boundary after it reaches this size.
+     */
+    private static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+
+    private static final Object ENTRY_STARTED = new Object();
+    private static final Object ENTRY_ENDED = new Object();
+
+    /**
+     * An error recovered by a parser working on one chunk.
+     */
+    private static final class RecordedError {
+        public final VCardException exception;
+        public final long position;
+
+        public RecordedError(VCardException exception, long position) {
+            this.exception = exception;
+            this.position = position;
+        }
+    }
+
+    /**
+     * Records events from a parser working on one chunk, so that they can be delivered
+     * to actual interpreters later on the thread calling parse().
+     */
+    private static final class RecordingInterpreter
+            implements VCardInterpreter, VCardErrorListener {
+        private final List<Object> mEvents = new ArrayList<Object>();
+        private final long mChunkOffset;
+
+        public RecordingInterpreter(long chunkOffset) {
+            mChunkOffset = chunkOffset;
+        }
+
+        @Override
+        public void onVCardStarted() {
+        }
+
+        @Override
+        public void onVCardEnded() {
+        }
+
+        @Override
+        public void onEntryStarted() {
+            mEvents.add(ENTRY_STARTED);
+        }
+
+        @Override
+        public void onEntryEnded() {
+            mEvents.add(ENTRY_ENDED);
+        }
+
+        @Override
+        public void onPropertyCreated(VCardProperty property) {
+            mEvents.add(property);
+        }
+
+        @Override
+        public void onError(VCardException exception, long position) {
+            mEvents.add(new RecordedError(exception, mChunkOffset + position));
+        }
+    }
+
+    /**
+     * Events recorded for one chunk, and the exception which stopped parsing it if any.
+     */
+    private static final class ChunkResult {
+        public final List<Object> events;
+        public final Exception exception;
+        public final int length;
+
+        public ChunkResult(List<Object> events, Exception exception, int length) {
+            this.events = events;
+            this.exception = exception;
+            this.length = length;
+        }
+    }
+
+    private final class ChunkTask implements Callable<ChunkResult> {
+        private final ByteBuffer mChunk;
+        private final long mOffset;
+
+        public ChunkTask(ByteBuffer chunk, long offset) {
+            mChunk = chunk;
+            mOffset = offset;
+        }
+
+        @Override
+        public ChunkResult call() {
+            final RecordingInterpreter recorder = new RecordingInterpreter(mOffset);
+            final VCardParser parser = createParser();
+            parser.addInterpreter(recorder);
+            if (mErrorListener != null) {
+                parser.setErrorListener(recorder);
+            }
+            synchronized (VCardParallelParser.this) {
+                if (mCanceled) {
+                    return new ChunkResult(recorder.mEvents, null, mChunk.limit());
+                }
+                mRunningParsers.add(parser);
+            }
+            try {
+                parser.parse(mChunk);
+            } catch (IOException e) {
+                return new ChunkResult(recorder.mEvents, e, mChunk.limit());
+            } catch (VCardException e) {
+                return new ChunkResult(recorder.mEvents, e, mChunk.limit());
+            } finally {
+                synchronized (VCardParallelParser.this) {
+                    mRunningParsers.remove(parser);
+                }
+            }
+            return new ChunkResult(recorder.mEvents, null, mChunk.limit());
+        }
+    }
+
+    private final int mVCardType;
+    private final ExecutorService mExecutor;
+    private final List<VCardInterpreter> mInterpreterList = new ArrayList<VCardInterpreter>();
+    private final List<VCardParser> mRunningParsers = new ArrayList<VCardParser>();
+
+    private VCardBinarySink mBinarySink;
+    private VCardParserMetrics mMetrics;
+    private VCardProgressListener mProgressListener;
+    private VCardPropertyFilter mPropertyFilter;
+    private VCardParseLimits mLimits;
+    private VCardErrorListener mErrorListener;
+    private boolean mOrdered = true;
+    private int mChunkSize = DEFAULT_CHUNK_SIZE;
+    private volatile boolean mCanceled;
+
+    /**
+     * Parses with a thread pool sized to the number of available processors, which is
+     * created for each parse and shut down after it.
+     */
+    public VCardParallelParser(int vcardType) {
+        this(vcardType, null);
+    }
+
+    /**
+     * Parses with the given executor. The executor is not shut down by this object.
+     */
+    public VCardParallelParser(int vcardType, ExecutorService executor) {
+        mVCardType = vcardType;
+        mExecutor = executor;
+    }
+
+    /**
+     * When true (default), entries are delivered to interpreters in source order.
+     * When false, they are delivered in the order chunks finish parsing.
+     */
+    public void setOrdered(boolean ordered) {
+        mOrdered = ordered;
+    }
+
+    /**
+     * Sets the minimum size in bytes of each chunk parsed by one task.
+     */
+    public void setChunkSize(int chunkSize) {
+        if (chunkSize <= 0) {
+            throw new IllegalArgumentException("chunkSize must be positive: " + chunkSize);
+        }
+        mChunkSize = chunkSize;
+    }
+
+    @Override
+    public void addInterpreter(VCardInterpreter interpreter) {
+        mInterpreterList.add(interpreter);
+    }
+
+    /**
+     * The sink is shared by parsers working on different chunks, so it must be thread-safe.
+     */
+    @Override
+    public void setBinarySink(VCardBinarySink sink) {
+        mBinarySink = sink;
+    }
+
+    /**
+     * Not supported, as properties of each chunk are kept until the chunk is delivered to
+     * interpreters.
+     *
+     * @throws IllegalStateException When reuseProperties is true.
+     */
+    @Override
+    public void setReuseProperties(boolean reuseProperties) {
+        if (reuseProperties) {
+            throw new IllegalStateException(
+                    "Properties cannot be reused while chunks are parsed in parallel");
+        }
+    }
+
+    /**
+     * The listener is called in the thread calling parse() each time a chunk is delivered
+     * to interpreters, with the total size of chunks delivered so far. When the input is
+     * parsed sequentially (see {@link #parse(FileChannel)} and {@link #parseOne(InputStream)}),
+     * it is called as by the other parsers.
+     */
+    @Override
+    public void setProgressListener(VCardProgressListener listener) {
+        mProgressListener = listener;
+    }
+
+    /**
+     * The filter is shared by parsers working on different chunks, so it must be thread-safe.
+     */
+    @Override
+    public void setPropertyFilter(VCardPropertyFilter filter) {
+        mPropertyFilter = filter;
+    }
+
+    /**
+     * The limits are enforced by the parser of each chunk.
+     */
+    @Override
+    public void setLimits(VCardParseLimits limits) {
+        mLimits = limits;
+    }
+
+    /**
+     * The listener is called in the thread calling parse(), in source order among the events
+     * delivered to interpreters.
+     */
+    @Override
+    public void setErrorListener(VCardErrorListener listener) {
+        mErrorListener = listener;
+    }
+
+    /**
+     * Counters of all chunks are added to the given object.
+     */
+    @Override
+    public void setMetrics(VCardParserMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    @Override
+    public void parse(InputStream is) throws IOException, VCardException {
+        if (is == null) {
+            throw new NullPointerException("InputStream must not be null.");
+        }
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[8192];
+        int count;
+        while ((count = is.read(buffer)) >= 0) {
+            os.write(buffer, 0, count);
+        }
+        parse(ByteBuffer.wrap(os.toByteArray()));
+    }
+
+    @Override
+    public void parse(FileChannel channel) throws IOException, VCardException {
+        if (channel == null) {
+            throw new NullPointerException("FileChannel must not be null.");
+        }
+        final long position = channel.position();
+        final long length = Math.max(channel.size() - position, 0);
+        if (length > Integer.MAX_VALUE) {
+            // Too large to be mapped at once. Parse it sequentially.
+            Log.w(LOG_TAG, "Input too large for parallel parse: " + length + " bytes");
+            final VCardParser parser = startSequentialParser();
+            try {
+                parser.parse(channel);
+            } finally {
+                endSequentialParser(parser);
+            }
+            return;
+        }
+        parse(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+    }
+
+    @Override
+    public void parse(ByteBuffer buffer) throws IOException, VCardException {
+        if (buffer == null) {
+            throw new NullPointerException("ByteBuffer must not be null.");
+        }
+        final ByteBuffer source = buffer.slice();
+        final int limit = source.limit();
+        final int parallelism = Runtime.getRuntime().availableProcessors();
+        final ExecutorService executor =
+                (mExecutor != null ? mExecutor : Executors.newFixedThreadPool(parallelism));
+        final CompletionService<ChunkResult> completionService =
+                new ExecutorCompletionService<ChunkResult>(executor);
+        // Limits chunks parsed but not delivered yet, so that memory usage stays bounded.
+        final int maxPendingChunks = parallelism * 2;
+        final LinkedList<Future<ChunkResult>> pending = new LinkedList<Future<ChunkResult>>();
+
+        for (VCardInterpreter interpreter : mInterpreterList) {
+            interpreter.onVCardStarted();
+        }
+        try {
+            int position = 0;
+            long delivered = 0;
+            while (true) {
+                if (mCanceled || Thread.currentThread().isInterrupted()) {
+                    Log.i(LOG_TAG, "Cancel request has come. exitting parse operation.");
+                    break;
+                }
+                if (position < limit && pending.size() < maxPendingChunks) {
+                    final int end = findChunkEnd(source, position, mChunkSize);
+                    final ByteBuffer chunk = source.duplicate();
+                    chunk.limit(end);
+                    chunk.position(position);
+                    final ChunkTask task = new ChunkTask(chunk.slice(), position);
+                    pending.add(mOrdered ? executor.submit(task) : completionService.submit(task));
+                    position = end;
+                    continue;
+                }
+                if (pending.isEmpty()) {
+                    break;
+                }
+                final Future<ChunkResult> future;
+                if (mOrdered) {
+                    future = pending.removeFirst();
+                } else {
+                    try {
+                        future = completionService.take();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new InterruptedIOException("Interrupted while parsing vCard");
+                    }
+                    pending.remove(future);
+                }
+                delivered += deliver(future);
+                if (mProgressListener != null) {
+                    mProgressListener.onProgress(delivered, limit);
+                }
+            }
+        } finally {
+            for (Future<ChunkResult> future : pending) {
+                future.cancel(true);
+            }
+            if (mExecutor == null) {
+                executor.shutdownNow();
+            }
+            // Reset here instead of at the start, so that cancel() before parse() is kept.
+            mCanceled = false;
+        }
+        for (VCardInterpreter interpreter : mInterpreterList) {
+            interpreter.onVCardEnded();
+        }
+    }
+
+    @Override
+    public void parseOne(InputStream is) throws IOException, VCardException {
+        // Only one entry is needed. Nothing to be parallelized.
+        final VCardParser parser = startSequentialParser();
+        try {
+            parser.parseOne(is);
+        } finally {
+            endSequentialParser(parser);
+        }
+    }
+
+    /**
+     * Stops parse() at the next chunk. When called before parse(), the next parse() returns
+     * without delivering entries.
+     */
+    @Override
+    public synchronized void cancel() {
+        Log.i(LOG_TAG, "ParallelParser received cancel operation.");
+        mCanceled = true;
+        for (VCardParser parser : mRunningParsers) {
+            parser.cancel();
+        }
+    }
+
+    /**
+     * @return A parser reading the whole input in the calling thread with all the options
+     * given to this object, which {@link #cancel()} reaches until
+     * {@link #endSequentialParser(VCardParser)} is called.
+     */
+    private VCardParser startSequentialParser() {
+        final VCardParser parser = createParser();
+        parser.setProgressListener(mProgressListener);
+        for (VCardInterpreter interpreter : mInterpreterList) {
+            parser.addInterpreter(interpreter);
+        }
+        synchronized (this) {
+            if (mCanceled) {
+                // Emits onVCardStarted() and onVCardEnded() only, as parse() does.
+                parser.cancel();
+            }
+            mRunningParsers.add(parser);
+        }
+        return parser;
+    }
+
+    private void endSequentialParser(VCardParser parser) {
+        synchronized (this) {
+            mRunningParsers.remove(parser);
+        }
+        mCanceled = false;
+    }
+
+    private VCardParser createParser() {
+        final VCardParser parser;
+        if (VCardConfig.isVersion40(mVCardType)) {
+            parser = new VCardParser_V40(mVCardType);
+        } else if (VCardConfig.isVersion30(mVCardType)) {
+            parser = new VCardParser_V30(mVCardType);
+        } else {
+            parser = new VCardParser_V21(mVCardType);
+        }
+        parser.setBinarySink(mBinarySink);
+        parser.setMetrics(mMetrics);
+        parser.setPropertyFilter(mPropertyFilter);
+        parser.setLimits(mLimits);
+        parser.setErrorListener(mErrorListener);
+        return parser;
+    }
+
+    /**
+     * Delivers events of a parsed chunk to interpreters. Events recorded before an error
+     * are delivered before the error is thrown, as a sequential parse would do.
+     *
+     * @return The length of the chunk in bytes.
+     */
+    private int deliver(Future<ChunkResult> future) throws IOException, VCardException {
+        final ChunkResult result;
+        try {
+            result = future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted while parsing vCard");
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new VCardException("Failed to parse vCard: " + cause);
+        }
+        deliver(result.events);
+        if (result.exception instanceof IOException) {
+            throw (IOException) result.exception;
+        } else if (result.exception instanceof VCardException) {
+            throw (VCardException) result.exception;
+        }
+        return result.length;
+    }
+
+    private void deliver(List<Object> events) {
+        for (Object event : events) {
+            if (event == ENTRY_STARTED) {
+                for (VCardInterpreter interpreter : mInterpreterList) {
+                    interpreter.onEntryStarted();
+                }
+            } else if (event == ENTRY_ENDED) {
+                for (VCardInterpreter interpreter : mInterpreterList) {
+                    interpreter.onEntryEnded();
+                }
+            } else if (event instanceof RecordedError) {
+                final RecordedError error = (RecordedError) event;
+                mErrorListener.onError(error.exception, error.position);
+            } else {
+                final VCardProperty property = (VCardProperty) event;
+                for (VCardInterpreter interpreter : mInterpreterList) {
+                    interpreter.onPropertyCreated(property);
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the end of the chunk starting at "from", which is right after the first "END:VCARD"
+     * line closing a top-level entry after at least chunkSize bytes. Nested entries allowed in
+     * vCard 2.1 are never split.
+     *
+     * @return the index right after the line terminator of the last line in the chunk.
+     */
+    /* package */ static int findChunkEnd(ByteBuffer buffer, int from, int chunkSize) {
+        final int limit = buffer.limit();
+        int depth = 0;
+        int lineStart = from;
+        while (lineStart < limit) {
+            int lineEnd = VCardParserImpl_V21.CustomBufferedReader.indexOfLineTerminator(
+                    buffer, lineStart, limit);
+            if (lineEnd < 0) {
+                lineEnd = limit;
+            }
+            int next = lineEnd;
+            if (next < limit) {
+                next += (buffer.get(next) == '\r' && next + 1 < limit
+                        && buffer.get(next + 1) == '\n') ? 2 : 1;
+            }
+            if (isEntryLine(buffer, lineStart, lineEnd, "BEGIN")) {
+                depth++;
+            } else if (isEntryLine(buffer, lineStart, lineEnd, "END")) {
+                if (depth > 0) {
+                    depth--;
+                }
+                if (depth == 0 && next - from >= chunkSize) {
+                    return next;
+                }
+            }
+            lineStart = next;
+        }
+        return limit;
+    }
+
+    /**
+     * @return true when the line is "BEGIN:VCARD" or "END:VCARD" (for the name "BEGIN" or "END").
+     * Lower cases and spaces around ':' are allowed, as the parser itself does.
+     */
+    private static boolean isEntryLine(ByteBuffer buffer, int start, int end, String name) {
+        int i = matchIgnoreCase(buffer, start, end, name);
+        if (i < 0) {
+            return false;
+        }
+        i = skipSpaces(buffer, i, end);
+        if (i >= end || buffer.get(i) != ':') {
+            return false;
+        }
+        i = matchIgnoreCase(buffer, skipSpaces(buffer, i + 1, end), end, "VCARD");
+        return i >= 0 && skipSpaces(buffer, i, end) == end;
+    }
+
+    /**
+     * @return the index after the matched upper-case word, or -1 when it does not match.
+     */
+    private static int matchIgnoreCase(ByteBuffer buffer, int start, int end, String word) {
+        final int length = word.length();
+        if (end - start < length) {
+            return -1;
+        }
+        for (int i = 0; i < length; i++) {
+            int b = buffer.get(start + i);
+            if (b >= 'a' && b <= 'z') {
+                b -= 'a' - 'A';
+            }
+            if (b != word.charAt(i)) {
+                return -1;
+            }
+        }
+        return start + length;
+    }
+
+    private static int skipSpaces(ByteBuffer buffer, int start, int end) {
+        int i = start;
+        while (i < end && (buffer.get(i) == ' ' || buffer.get(i) == '\t')) {
+            i++;
+        }
+        return i;
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import com.android.vcard.exception.VCardLimitExceededException;
+
+import java.io.File;
+
+/**
+ * <p>
+ * Caps on the sizes a parser accepts, given via {@link VCardParser#setLimits(VCardParseLimits)},
+ * so that one malformed or hostile input cannot exhaust the memory of the process.
+ * Nothing is limited by default.
+ * </p>
+ * <p>
+ * A line longer than {@link #getMaxLineLength()} always stops parsing with
+ * {@link VCardLimitExceededException}, as the parser cannot tell where the property ends.
+ * For the other limits, the offending property is either reported the same way, or read past
+ * and dropped when {@link #setSkipOversizedProperties(boolean)} is set, in which case parsing
+ * continues with the next property.
+ * </p>
+ * <p>
+ * Values encoded with BASE64 can also be decoded into temporary files once they grow over
+ * {@link #getSpillThreshold()} bytes. See {@link #setSpillThreshold(int, File)}.
+ * </p>
+ * <p>
+ * Parsers read this object while parsing rather than copying it, so changes made during
+ * parsing apply from the next line or property.
+ * </p>
+ */
+public class VCardParseLimits {
+    public static final int UNLIMITED = Integer.MAX_VALUE;
+
+    private int mMaxLineLength = UNLIMITED;
+    private int mMaxValueLength = UNLIMITED;
+    private int mMaxBinaryLength = UNLIMITED;
+    private int mMaxParameterCount = UNLIMITED;
+    private int mMaxPropertyCount = UNLIMITED;
+    private boolean mSkipOversizedProperties;
+    private int mSpillThreshold = UNLIMITED;
+    private File mSpillDirectory;
+
+    /**
+     * @param maxLineLength The maximum number of bytes in one physical line, excluding
+     * the line terminator.
+     */
+    public void setMaxLineLength(int maxLineLength) {
+        mMaxLineLength = checkLimit(maxLineLength);
+    }
+
+    public int getMaxLineLength() {
+        return mMaxLineLength;
+    }
+
+    /**
+     * @param maxValueLength The maximum number of chars in a text value after unfolding,
+     * before it is decoded. In vCard 3.0 and 4.0, where unfolding happens before the type of
+     * the value is known, the larger of this and the encoded size allowed by
+     * {@link #setMaxBinaryLength(int)} applies to each unfolded line.
+     */
+    public void setMaxValueLength(int maxValueLength) {
+        mMaxValueLength = checkLimit(maxValueLength);
+    }
+
+    public int getMaxValueLength() {
+        return mMaxValueLength;
+    }
+
+    /**
+     * @param maxBinaryLength The maximum number of bytes in a value encoded with BASE64 after
+     * decoding, as estimated from its encoded length.
+     */
+    public void setMaxBinaryLength(int maxBinaryLength) {
+        mMaxBinaryLength = checkLimit(maxBinaryLength);
+    }
+
+    public int getMaxBinaryLength() {
+        return mMaxBinaryLength;
+    }
+
+    /**
+     * @param maxParameterCount The maximum number of parameters (e.g. TYPE=HOME) in one
+     * property.
+     */
+    public void setMaxParameterCount(int maxParameterCount) {
+        mMaxParameterCount = checkLimit(maxParameterCount);
+    }
+
+    public int getMaxParameterCount() {
+        return mMaxParameterCount;
+    }
+
+    /**
+     * @param maxPropertyCount The maximum number of properties in one top-level entry,
+     * including those in its nested entries.
+     */
+    public void setMaxPropertyCount(int maxPropertyCount) {
+        mMaxPropertyCount = checkLimit(maxPropertyCount);
+    }
+
+    public int getMaxPropertyCount() {
+        return mMaxPropertyCount;
+    }
+
+    /**
+     * When true, properties exceeding the limits on values, parameters, and properties are
+     * dropped with a warning instead of stopping parsing. False by default.
+     */
+    public void setSkipOversizedProperties(boolean skipOversizedProperties) {
+        mSkipOversizedProperties = skipOversizedProperties;
+    }
+
+    public boolean isSkipOversizedProperties() {
+        return mSkipOversizedProperties;
+    }
+
+    /**
+     * <p>
+     * Makes parsers without a {@link VCardBinarySink} keep each value encoded with BASE64 in
+     * memory up to the given number of bytes, and move it into a temporary file in
+     * the directory once it grows larger. Values kept in files are loaded into memory only
+     * when {@link VCardProperty#getByteValue()} is called, which deletes the files (e.g.
+     * {@link VCardEntry} does so for PHOTO and LOGO).
+     * </p>
+     * <p>
+     * Interpreters may stream the values via {@link VCardProperty#getBinaryValue()} and delete
+     * the files early with {@link VCardBinaryValue#release()}. Files left are deleted when
+     * parsing ends, after {@link VCardInterpreter#onVCardEnded()}, so the values cannot be read
+     * after that unless loaded by {@link VCardProperty#getByteValue()} before. Interpreters
+     * keeping the files should use their own sink instead (see
+     * {@link VCardBinaryValue#temporaryFileSink(File)}).
+     * </p>
+     */
+    public void setSpillThreshold(int spillThreshold, File directory) {
+        if (directory == null) {
+            throw new NullPointerException("Directory must not be null.");
+        }
+        mSpillThreshold = checkLimit(spillThreshold);
+        mSpillDirectory = directory;
+    }
+
+    /**
+     * @return The size in bytes above which binary values are moved into temporary files,
+     * or {@link #UNLIMITED}.
+     */
+    public int getSpillThreshold() {
+        return mSpillThreshold;
+    }
+
+    /**
+     * @return The directory of temporary files for binary values, or null when values are
+     * always kept in memory.
+     */
+    public File getSpillDirectory() {
+        return mSpillDirectory;
+    }
+
+    private static int checkLimit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Negative limit: " + limit);
+        }
+        return limit;
+    }
+}
@@ -17,8 +17,14 @@ package com.android.vcard;
 
 import com.android.vcard.exception.VCardException;
 
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
 
 public abstract class VCardParser {
 
@@ -30,6 +36,94 @@ public abstract class VCardParser {
      */
     public abstract void addInterpreter(VCardInterpreter interpreter);
 
+    /**
+     * <p>Specifies where values encoded with BASE64 (e.g. PHOTO) are decoded into.</p>
+     *
+     * <p>By default they are decoded into byte arrays available via
+     * {@link VCardProperty#getByteValue()}. With a sink, each value is decoded line by line
+     * into a {@link VCardBinaryValue} available via {@link VCardProperty#getBinaryValue()},
+     * so that large values do not have to fit in memory.</p>
+     *
+     * <p>The default implementation does nothing, so values are decoded as by default.
+     * Parsers in this package override it.</p>
+     *
+     * @param sink The sink, or null for the default behavior.
+     */
+    public void setBinarySink(VCardBinarySink sink) {
+    }
+
+    /**
+     * <p>When true, the parser reuses one {@link VCardProperty} object for every property
+     * instead of allocating a new one with its collections for each line. Each property passed
+     * to {@link VCardInterpreter#onPropertyCreated(VCardProperty)} is valid only until
+     * the callback returns, so interpreters must copy what they keep (e.g. with
+     * {@link VCardProperty#VCardProperty(VCardProperty)}). Off by default.</p>
+     *
+     * <p>The default implementation does nothing, so a new property is allocated for each
+     * line. Parsers in this package override it.</p>
+     */
+    public void setReuseProperties(boolean reuseProperties) {
+    }
+
+    /**
+     * <p>Makes the parser add its counters (bytes, lines, entries, properties, and decode
+     * times) to the given object. Nothing is collected by default.</p>
+     *
+     * <p>The default implementation does nothing. Parsers in this package override it.</p>
+     *
+     * @param metrics The object to which counters are added, or null to stop collecting.
+     */
+    public void setMetrics(VCardParserMetrics metrics) {
+    }
+
+    /**
+     * <p>Makes the parser report how many bytes of the input it has consumed.</p>
+     *
+     * <p>The default implementation does nothing. Parsers in this package override it.</p>
+     *
+     * @param listener The listener, or null to stop reporting.
+     */
+    public void setProgressListener(VCardProgressListener listener) {
+    }
+
+    /**
+     * <p>Makes the parser skip properties rejected by the given filter without decoding
+     * their values. Interpreters receive only accepted properties.</p>
+     *
+     * <p>The default implementation does nothing, so all properties are passed to
+     * interpreters. Parsers in this package override it.</p>
+     *
+     * @param filter The filter, or null to accept all properties.
+     */
+    public void setPropertyFilter(VCardPropertyFilter filter) {
+    }
+
+    /**
+     * <p>Makes the parser enforce the given limits on the sizes of lines, values, parameters,
+     * and properties. Nothing is limited by default.</p>
+     *
+     * <p>The default implementation does nothing, so nothing is limited. Parsers in this
+     * package override it. Callers relying on limits for untrusted input should use them.</p>
+     *
+     * @param limits The limits, or null to remove them.
+     */
+    public void setLimits(VCardParseLimits limits) {
+    }
+
+    /**
+     * <p>Makes the parser recover from errors in entries instead of throwing them. The entry
+     * containing an error is ended, the listener is told about the error, and parsing continues
+     * from the next top-level entry. Cancellation, version mismatches, and exceeded limits
+     * are still thrown.</p>
+     *
+     * <p>The default implementation does nothing, so parsing stops at the first error.
+     * Parsers in this package override it.</p>
+     *
+     * @param listener The listener, or null to stop at the first error (default).
+     */
+    public void setErrorListener(VCardErrorListener listener) {
+    }
+
     /**
      * <p>Parses a whole InputStream as a vCard file and lets registered {@link VCardInterpreter}
      * instances handle callbacks.</p>
@@ -42,6 +136,63 @@ public abstract class VCardParser {
      */
     public abstract void parse(InputStream is) throws IOException, VCardException;
 
+    /**
+     * <p>Parses the bytes between the position and the limit of a ByteBuffer as a vCard file
+     * and lets registered {@link VCardInterpreter} instances handle callbacks.</p>
+     *
+     * <p>Useful for payloads already held in memory (e.g. a body received over network).
+     * The buffer may be a heap buffer, a direct buffer, or a mapped region of a file.
+     * Its position is not modified.</p>
+     *
+     * <p>The default implementation copies the bytes and passes them to
+     * {@link #parse(InputStream)}. Parsers in this package read the buffer directly.</p>
+     *
+     * @param buffer The source to parse.
+     * @throws IOException, VCardException
+     */
+    public void parse(ByteBuffer buffer) throws IOException, VCardException {
+        final ByteBuffer source = buffer.duplicate();
+        final byte[] bytes = new byte[source.remaining()];
+        source.get(bytes);
+        parse(new ByteArrayInputStream(bytes));
+    }
+
+    /**
+     * <p>Parses a FileChannel from its current position to its end as a vCard file
+     * and lets registered {@link VCardInterpreter} instances handle callbacks.</p>
+     *
+     * <p>Parsers in this package map the file into memory region by region and read lines
+     * straight from the mapped regions. The default implementation reads the channel via
+     * {@link #parse(InputStream)}. In both cases, the position of the channel is the same
+     * after this method returns.</p>
+     *
+     * @param channel The source to parse.
+     * @throws IOException, VCardException
+     */
+    public void parse(FileChannel channel) throws IOException, VCardException {
+        final long position = channel.position();
+        try {
+            parse(Channels.newInputStream(channel));
+        } finally {
+            channel.position(position);
+        }
+    }
+
+    /**
+     * <p>Parses a whole file as a vCard file. See {@link #parse(FileChannel)}.</p>
+     *
+     * @param file The file to parse.
+     * @throws IOException, VCardException
+     */
+    public void parse(File file) throws IOException, VCardException {
+        final FileInputStream is = new FileInputStream(file);
+        try {
+            parse(is.getChannel());
+        } finally {
+            is.close();
+        }
+    }
+
     /**
      * <p>Parses the first vCard entry in InputStream and lets registered {@link VCardInterpreter}
      * instances handle callbacks.</p>
@@ -89,7 +240,11 @@ public abstract class VCardParser {
      * Cancel parsing vCard. Useful when you want to stop the parse in the other threads.
      * </p>
      * <p>
-     * Actual cancel is done after parsing the current vcard.
+     * Actual cancel is done when the parsing thread reads the next line, even in the middle
+     * of a long value. parse() then returns after calling
+     * {@link VCardInterpreter#onEntryEnded()} for each entry left open and
+     * {@link VCardInterpreter#onVCardEnded()}, as it does when the parsing thread is
+     * interrupted. The interrupt status of the thread is kept.
      * </p>
      */
     public abstract void cancel();
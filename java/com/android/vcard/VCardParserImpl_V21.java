@@ -17,19 +17,26 @@ package com.android.vcard;
 
 import android.text.TextUtils;
 import android.util.Base64;
+import android.util.Base64DataException;
 import android.util.Log;
 
 import com.android.vcard.exception.VCardAgentNotSupportedException;
+import com.android.vcard.exception.VCardCanceledException;
 import com.android.vcard.exception.VCardException;
 import com.android.vcard.exception.VCardInvalidCommentLineException;
 import com.android.vcard.exception.VCardInvalidLineException;
+import com.android.vcard.exception.VCardLimitExceededException;
 import com.android.vcard.exception.VCardVersionException;
 
-import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
-import java.io.Reader;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.HashSet;
@@ -45,20 +52,266 @@ import java.util.Set;
 /* package */ class VCardParserImpl_V21 {
     private static final String LOG_TAG = VCardConstants.LOG_TAG;
 
-    protected static final class CustomBufferedReader extends BufferedReader {
-        private long mTime;
+    /**
+     * <p>
+     * Line reader splitting the raw bytes of the input by itself.
+     * </p>
+     * <p>
+     * Each line is returned as a String in which one char represents exactly one byte
+     * ({@link VCardConfig#DEFAULT_INTERMEDIATE_CHARSET}). Lines are created straight from the
+     * byte buffer, so no {@link java.io.Reader} or charset decoder is involved. Each value is
+     * decoded into its actual charset only once, after its CHARSET parameter is known.
+     * </p>
+     * <p>
+     * The bytes come from an {@link InputStream}, a {@link ByteBuffer} the caller already holds,
+     * or windows of a {@link FileChannel} mapped into memory. In the last two cases lines are
+     * scanned in place without copying the input into an intermediate buffer.
+     * </p>
+     * <p>
+     * Lines are terminated by "\r", "\n", or "\r\n", as {@link java.io.BufferedReader} does.
+     * </p>
+     */
+    protected static final class CustomBufferedReader {
+        private static final int DEFAULT_BUFFER_SIZE = 8192;
+
+        // Masks for testing 8 bytes at once in indexOfLineTerminator().
+        private static final long LOW_7_BITS = 0x7f7f7f7f7f7f7f7fL;
+        private static final long HIGH_BITS = 0x8080808080808080L;
+        // 0x80 - 0x0e in each byte, which sets the highest bit of bytes from 0x0e to 0x7f.
+        private static final long BELOW_0E_BYTES = 0x7272727272727272L;
+
+        /**
+         * Thrown by a reader created with {@link #CustomBufferedReader()} when bytes fed so far
+         * are not enough to return a line and {@link #endOfInput()} has not been called.
+         */
+        /* package */ static final class NeedMoreInputException extends IOException {
+            public NeedMoreInputException() {
+                super("More input is needed");
+            }
+        }
+
+        /**
+         * Thrown when a line is longer than {@link #setMaxLineLength(int)}.
+         */
+        /* package */ static final class LineTooLongException extends IOException {
+            public LineTooLongException(String message) {
+                super(message);
+            }
+        }
+
+        /**
+         * The size of each region mapped from a {@link FileChannel}. A window is mapped again
+         * from the beginning of the current line when the line does not end inside it.
+         */
+        private static final int MAP_WINDOW_SIZE = 16 * 1024 * 1024;
+
+        private final InputStream mInputStream;
+        private final FileChannel mChannel;
+        private final long mChannelSize;
+
+        /**
+         * True when bytes are given via {@link #feed(ByteBuffer)} instead of being read.
+         */
+        private final boolean mFed;
+        private boolean mEndOfInput;
+
+        /**
+         * The number of bytes to be read, or -1 when unknown.
+         */
+        private final long mSize;
+
+        /**
+         * Offset in {@link #mChannel} corresponding to the index 0 of {@link #mWindow}.
+         */
+        private long mChannelOffset;
+
+        /**
+         * Bytes currently available. Indices used in this class are absolute indices
+         * in this buffer.
+         */
+        private ByteBuffer mWindow;
+
+        /**
+         * The backing array of {@link #mWindow}, or null when the window is not backed by an
+         * accessible array (e.g. a mapped or read-only buffer).
+         */
+        private byte[] mArray;
+        private int mArrayOffset;
+
+        /**
+         * Used for copying a line out of a window without accessible array.
+         */
+        private ByteBuffer mWindowDuplicate;
+        private byte[] mLineBuffer;
+
+        /**
+         * A logical line being built from folded lines by {@link #readContinuationLine(boolean)}.
+         */
+        private byte[] mUnfoldedLine;
+        private int mUnfoldedLength;
+
+        private int mPosition;
+        private int mLimit;
+
+        /**
+         * True when the previous line ended with '\r', in which case the '\n' right after it
+         * must be dropped.
+         */
+        private boolean mSkipLf;
+
+        /**
+         * Number of input bytes before the index 0 of {@link #mWindow}.
+         */
+        private long mWindowOffset;
+
+        private long mLineCount;
+
+        private int mMaxLineLength = Integer.MAX_VALUE;
 
         /**
          * Needed since "next line" may be null due to end of line.
          */
         private boolean mNextLineIsValid;
         private String mNextLine;
+        private long mNextLinePosition;
+
+        // State saved by mark().
+        private int mMarkPosition;
+        private boolean mMarkSkipLf;
+        private long mMarkLineCount;
+        private boolean mMarkNextLineIsValid;
+        private String mMarkNextLine;
+        private long mMarkNextLinePosition;
+
+        public CustomBufferedReader(InputStream in) {
+            mInputStream = in;
+            mChannel = null;
+            mChannelSize = 0;
+            mFed = false;
+            mSize = -1;
+            setWindow(ByteBuffer.wrap(new byte[DEFAULT_BUFFER_SIZE]), 0);
+        }
 
-        public CustomBufferedReader(Reader in) {
-            super(in);
+        /**
+         * Reads lines from bytes between the position and the limit of the given buffer.
+         * The position of the buffer itself is not modified.
+         */
+        public CustomBufferedReader(ByteBuffer buffer) {
+            mInputStream = null;
+            mChannel = null;
+            mChannelSize = 0;
+            mFed = false;
+            final ByteBuffer window = buffer.slice();
+            mSize = window.limit();
+            setWindow(window, window.limit());
+        }
+
+        /**
+         * Reads lines from the current position of the given channel to its end.
+         */
+        public CustomBufferedReader(FileChannel channel) throws IOException {
+            mInputStream = null;
+            mChannel = channel;
+            mChannelSize = channel.size();
+            mFed = false;
+            mChannelOffset = channel.position();
+            mSize = Math.max(mChannelSize - mChannelOffset, 0);
+            final long length = Math.min(mChannelSize - mChannelOffset, MAP_WINDOW_SIZE);
+            setWindow(map(mChannelOffset, Math.max(length, 0)), (int) Math.max(length, 0));
+        }
+
+        /**
+         * Reads lines from bytes given via {@link #feed(ByteBuffer)}. When the fed bytes run out
+         * before {@link #endOfInput()} is called, reading methods throw
+         * {@link NeedMoreInputException}, after which the caller should go back to
+         * the last {@link #mark()}.
+         */
+        public CustomBufferedReader() {
+            mInputStream = null;
+            mChannel = null;
+            mChannelSize = 0;
+            mFed = true;
+            mSize = -1;
+            setWindow(ByteBuffer.wrap(new byte[DEFAULT_BUFFER_SIZE]), 0);
+        }
+
+        /**
+         * Appends the remaining bytes of data, moving its position to its limit.
+         * Invalidates the last mark.
+         */
+        public void feed(ByteBuffer data) {
+            final int length = data.remaining();
+            byte[] buffer = mArray;
+            if (mLimit + length > buffer.length) {
+                if (mPosition > 0) {
+                    mWindowOffset += mPosition;
+                    System.arraycopy(buffer, mPosition, buffer, 0, mLimit - mPosition);
+                    mLimit -= mPosition;
+                    mPosition = 0;
+                }
+                if (mLimit + length > buffer.length) {
+                    final byte[] newBuffer =
+                            new byte[Math.max(buffer.length * 2, mLimit + length)];
+                    System.arraycopy(buffer, 0, newBuffer, 0, mLimit);
+                    buffer = newBuffer;
+                    setWindow(ByteBuffer.wrap(buffer), mLimit);
+                }
+            }
+            data.get(buffer, mLimit, length);
+            mLimit += length;
+        }
+
+        /**
+         * Tells that no more bytes will be fed, so that the last line is returned even without
+         * a line terminator.
+         */
+        public void endOfInput() {
+            mEndOfInput = true;
+        }
+
+        /**
+         * @return True when reading methods may throw {@link NeedMoreInputException}.
+         */
+        public boolean mayNeedMoreInput() {
+            return mFed && !mEndOfInput;
+        }
+
+        /**
+         * @return The number of fed bytes not consumed yet.
+         */
+        public int getAvailableBytes() {
+            return mLimit - mPosition;
+        }
+
+        /**
+         * Makes reading methods throw {@link LineTooLongException} for a line longer than
+         * the given number of bytes, before the whole line is buffered.
+         */
+        public void setMaxLineLength(int maxLineLength) {
+            mMaxLineLength = maxLineLength;
+        }
+
+        /**
+         * Saves the state of this object, to which {@link #reset()} goes back.
+         */
+        public void mark() {
+            mMarkPosition = mPosition;
+            mMarkSkipLf = mSkipLf;
+            mMarkLineCount = mLineCount;
+            mMarkNextLineIsValid = mNextLineIsValid;
+            mMarkNextLine = mNextLine;
+            mMarkNextLinePosition = mNextLinePosition;
+        }
+
+        public void reset() {
+            mPosition = mMarkPosition;
+            mSkipLf = mMarkSkipLf;
+            mLineCount = mMarkLineCount;
+            mNextLineIsValid = mMarkNextLineIsValid;
+            mNextLine = mMarkNextLine;
+            mNextLinePosition = mMarkNextLinePosition;
         }
 
-        @Override
         public String readLine() throws IOException {
             if (mNextLineIsValid) {
                 final String ret = mNextLine;
@@ -67,11 +320,7 @@ import java.util.Set;
                 return ret;
             }
 
-            final long start = System.currentTimeMillis();
-            final String line = super.readLine();
-            final long end = System.currentTimeMillis();
-            mTime += end - start;
-            return line;
+            return readLineInternal();
         }
 
         /**
@@ -79,30 +328,526 @@ import java.util.Set;
          */
         public String peekLine() throws IOException {
             if (!mNextLineIsValid) {
-                final long start = System.currentTimeMillis();
-                final String line = super.readLine();
-                final long end = System.currentTimeMillis();
-                mTime += end - start;
-
-                mNextLine = line;
+                mNextLinePosition = getPosition();
+                mNextLine = readLineInternal();
                 mNextLineIsValid = true;
             }
 
             return mNextLine;
         }
 
-        public long getTotalmillisecond() {
-            return mTime;
+        /**
+         * @return The number of bytes consumed from the input so far. A peeked line is not
+         * counted until it is read.
+         */
+        public long getPosition() {
+            return mNextLineIsValid ? mNextLinePosition : mWindowOffset + mPosition;
+        }
+
+        /**
+         * @return The number of bytes to be read from the input, or -1 when unknown.
+         */
+        public long getSize() {
+            return mSize;
+        }
+
+        /**
+         * @return The number of lines read from the input so far, including a peeked one.
+         */
+        public long getLineCount() {
+            return mLineCount;
+        }
+
+        private String readLineInternal() throws IOException {
+            final int length = prepareLine();
+            if (length < 0) {
+                return null;
+            }
+            final String line = createLine(mPosition, length);
+            skipLine(length);
+            return line;
+        }
+
+        /**
+         * Makes the whole line at {@link #mPosition} available in the window.
+         *
+         * @return The length of the line excluding its terminator, or -1 at the end of input.
+         */
+        private int prepareLine() throws IOException {
+            if (mSkipLf) {
+                if (mPosition == mLimit && !fill()) {
+                    return -1;
+                }
+                if (byteAt(mPosition) == '\n') {
+                    mPosition++;
+                }
+                mSkipLf = false;
+            }
+
+            int scanned = 0;  // Number of bytes already scanned from mPosition.
+            while (true) {
+                final int end = indexOfLineTerminator(mPosition + scanned, mLimit);
+                if (end >= 0) {
+                    checkLineLength(end - mPosition);
+                    return end - mPosition;
+                }
+                scanned = mLimit - mPosition;
+                checkLineLength(scanned);
+                if (!fill()) {
+                    // The last line may not have a line terminator.
+                    return (scanned == 0 ? -1 : scanned);
+                }
+            }
+        }
+
+        /**
+         * Moves past the line measured by {@link #prepareLine()} and its terminator.
+         */
+        private void skipLine(int length) {
+            final int end = mPosition + length;
+            mPosition = end;
+            if (end < mLimit) {
+                mSkipLf = (byteAt(end) == '\r');
+                mPosition = end + 1;
+                if (mSkipLf && mPosition < mLimit && byteAt(mPosition) == '\n') {
+                    // Drop it now, so that getPosition() points to the next line.
+                    mPosition++;
+                    mSkipLf = false;
+                }
+            }
+            mLineCount++;
+        }
+
+        /**
+         * <p>
+         * Skips empty lines, and tells whether the next line is a continuation line of
+         * RFC 2425 line folding, i.e. starts with ' ' or '\t'.
+         * </p>
+         * <p>
+         * When it is not, the next line is peeked, so that its bytes are not scanned again.
+         * </p>
+         */
+        public boolean hasContinuationLine() throws IOException {
+            while (true) {
+                if (mNextLineIsValid) {
+                    if (mNextLine == null) {
+                        return false;
+                    } else if (mNextLine.length() > 0) {
+                        return isFoldingWhitespace(mNextLine.charAt(0));
+                    }
+                    readLine();
+                    continue;
+                }
+                final long position = getPosition();
+                final int length = prepareLine();
+                if (length == 0) {
+                    skipLine(0);
+                    continue;
+                }
+                if (length > 0 && isFoldingWhitespace((char) (byteAt(mPosition) & 0xff))) {
+                    return true;
+                }
+                mNextLinePosition = position;
+                mNextLine = (length > 0 ? createLine(mPosition, length) : null);
+                mNextLineIsValid = true;
+                if (length > 0) {
+                    skipLine(length);
+                }
+                return false;
+            }
+        }
+
+        private static boolean isFoldingWhitespace(char ch) {
+            return ch == ' ' || ch == '\t';
+        }
+
+        /**
+         * Starts an unfolded line with the given text, from which {@link #getUnfoldedLine()}
+         * creates a String after continuation lines are appended.
+         *
+         * @param start The index of the first char of the text to be kept.
+         */
+        public void startUnfoldedLine(String text, int start) {
+            mUnfoldedLength = 0;
+            final int length = text.length() - start;
+            ensureUnfoldedCapacity(length);
+            for (int i = 0; i < length; i++) {
+                // Lines hold one char per byte.
+                mUnfoldedLine[i] = (byte) text.charAt(start + i);
+            }
+            mUnfoldedLength = length;
+        }
+
+        /**
+         * Reads the continuation line found by {@link #hasContinuationLine()}, and appends
+         * its bytes after the leading whitespace to the unfolded line, copying them straight
+         * from the input buffer.
+         *
+         * @param append False when the line should be read without being appended.
+         */
+        public void readContinuationLine(boolean append) throws IOException {
+            if (mNextLineIsValid) {
+                final String line = readLine();
+                if (append) {
+                    final int length = line.length() - 1;
+                    ensureUnfoldedCapacity(mUnfoldedLength + length);
+                    for (int i = 0; i < length; i++) {
+                        mUnfoldedLine[mUnfoldedLength + i] = (byte) line.charAt(i + 1);
+                    }
+                    mUnfoldedLength += length;
+                }
+                return;
+            }
+            final int length = prepareLine();
+            if (append) {
+                ensureUnfoldedCapacity(mUnfoldedLength + length - 1);
+                copyBytes(mPosition + 1, mUnfoldedLine, mUnfoldedLength, length - 1);
+                mUnfoldedLength += length - 1;
+            }
+            skipLine(length);
+        }
+
+        public int getUnfoldedLength() {
+            return mUnfoldedLength;
+        }
+
+        public String getUnfoldedLine() {
+            return new String(mUnfoldedLine, 0, mUnfoldedLength, INTERMEDIATE_CHARSET);
+        }
+
+        private void ensureUnfoldedCapacity(int capacity) {
+            if (mUnfoldedLine == null || mUnfoldedLine.length < capacity) {
+                final byte[] buffer = new byte[Math.max(capacity,
+                        mUnfoldedLine == null ? DEFAULT_BUFFER_SIZE : mUnfoldedLine.length * 2)];
+                if (mUnfoldedLine != null) {
+                    System.arraycopy(mUnfoldedLine, 0, buffer, 0, mUnfoldedLength);
+                }
+                mUnfoldedLine = buffer;
+            }
+        }
+
+        private void copyBytes(int start, byte[] dst, int offset, int length) {
+            if (mArray != null) {
+                System.arraycopy(mArray, mArrayOffset + start, dst, offset, length);
+            } else {
+                mWindowDuplicate.position(start);
+                mWindowDuplicate.get(dst, offset, length);
+            }
+        }
+
+        private void checkLineLength(int length) throws LineTooLongException {
+            if (length > mMaxLineLength) {
+                throw new LineTooLongException("Line longer than " + mMaxLineLength
+                        + " bytes at byte " + (mWindowOffset + mPosition));
+            }
+        }
+
+        /**
+         * @return the index of the first '\r' or '\n' in [from, to), or -1 if there's no such.
+         */
+        private int indexOfLineTerminator(int from, int to) {
+            return indexOfLineTerminator(mWindow, from, to);
+        }
+
+        /**
+         * <p>
+         * Returns the index of the first '\r' or '\n' in [from, to) of the buffer, or -1 if
+         * there's no such.
+         * </p>
+         * <p>
+         * Reads 8 bytes at a time and finds the first byte below 0x0e among them with bit
+         * operations, which is then compared with '\r' and '\n'. Other control characters
+         * like '\t' are rare, so most words are skipped without testing each byte.
+         * The remaining bytes are tested one by one.
+         * </p>
+         */
+        /* package */ static int indexOfLineTerminator(ByteBuffer buffer, int from, int to) {
+            int i = from;
+            if (to - i >= 8) {
+                final boolean bigEndian = (buffer.order() == ByteOrder.BIG_ENDIAN);
+                while (i <= to - 8) {
+                    final long word = buffer.getLong(i);
+                    // The highest bit of each byte below 0x0e. No carry crosses bytes.
+                    final long found = ~(((word & LOW_7_BITS) + BELOW_0E_BYTES) | word)
+                            & HIGH_BITS;
+                    if (found == 0) {
+                        i += 8;
+                        continue;
+                    }
+                    i += (bigEndian ? Long.numberOfLeadingZeros(found)
+                            : Long.numberOfTrailingZeros(found)) >>> 3;
+                    final byte b = buffer.get(i);
+                    if (b == '\n' || b == '\r') {
+                        return i;
+                    }
+                    i++;
+                }
+            }
+            for (; i < to; i++) {
+                final byte b = buffer.get(i);
+                if (b == '\n' || b == '\r') {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private byte byteAt(int index) {
+            return mArray != null ? mArray[mArrayOffset + index] : mWindow.get(index);
+        }
+
+        private String createLine(int start, int length) {
+            if (mArray != null) {
+                return new String(mArray, mArrayOffset + start, length, INTERMEDIATE_CHARSET);
+            }
+            if (mLineBuffer == null || mLineBuffer.length < length) {
+                mLineBuffer = new byte[Math.max(length, DEFAULT_BUFFER_SIZE)];
+            }
+            copyBytes(start, mLineBuffer, 0, length);
+            return new String(mLineBuffer, 0, length, INTERMEDIATE_CHARSET);
+        }
+
+        private void setWindow(ByteBuffer window, int limit) {
+            mWindow = window;
+            if (window.hasArray()) {
+                mArray = window.array();
+                mArrayOffset = window.arrayOffset();
+                mWindowDuplicate = null;
+            } else {
+                mArray = null;
+                mArrayOffset = 0;
+                mWindowDuplicate = window.duplicate();
+            }
+            mLimit = limit;
+        }
+
+        private ByteBuffer map(long offset, long length) throws IOException {
+            return mChannel.map(FileChannel.MapMode.READ_ONLY, offset, length);
+        }
+
+        /**
+         * Makes more bytes available after unread ones, keeping the bytes from mPosition.
+         * The window is enlarged when a single line does not fit into it.
+         *
+         * @return false when the input has no more bytes.
+         */
+        private boolean fill() throws IOException {
+            if (mInputStream != null) {
+                return fillFromStream();
+            } else if (mChannel != null) {
+                return fillFromChannel();
+            } else if (mFed && !mEndOfInput) {
+                throw new NeedMoreInputException();
+            } else {
+                return false;
+            }
+        }
+
+        private boolean fillFromStream() throws IOException {
+            byte[] buffer = mArray;
+            if (mPosition > 0) {
+                mWindowOffset += mPosition;
+                System.arraycopy(buffer, mPosition, buffer, 0, mLimit - mPosition);
+                mLimit -= mPosition;
+                mPosition = 0;
+            } else if (mLimit == buffer.length) {
+                final byte[] newBuffer = new byte[buffer.length * 2];
+                System.arraycopy(buffer, 0, newBuffer, 0, mLimit);
+                buffer = newBuffer;
+                setWindow(ByteBuffer.wrap(buffer), mLimit);
+            }
+            int count;
+            do {
+                count = mInputStream.read(buffer, mLimit, buffer.length - mLimit);
+            } while (count == 0);
+            if (count < 0) {
+                return false;
+            }
+            mLimit += count;
+            return true;
+        }
+
+        private boolean fillFromChannel() throws IOException {
+            if (mChannelOffset + mLimit >= mChannelSize) {
+                return false;
+            }
+            final long offset = mChannelOffset + mPosition;
+            final long unread = mLimit - mPosition;
+            final long length = Math.min(mChannelSize - offset,
+                    Math.min(Integer.MAX_VALUE, Math.max(MAP_WINDOW_SIZE, unread * 2)));
+            if (length <= unread) {
+                throw new IOException("Line too long to be mapped: " + unread + " bytes");
+            }
+            mChannelOffset = offset;
+            mWindowOffset += mPosition;
+            mPosition = 0;
+            setWindow(map(offset, length), (int) length);
+            return true;
+        }
+    }
+
+    /**
+     * Decodes BASE64 bytes written to it chunk by chunk and passes the result to the underlying
+     * stream. White spaces are ignored. Throws {@link Base64DataException} on invalid input.
+     */
+    private static final class Base64DecodingOutputStream extends FilterOutputStream {
+        // Must be a multiple of 4 so that each chunk can be decoded by itself.
+        private static final int CHUNK_SIZE = 4096;
+
+        private final byte[] mChunk = new byte[CHUNK_SIZE];
+        private int mChunkLength;
+        private boolean mClosed;
+
+        public Base64DecodingOutputStream(OutputStream out) {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            if (b == ' ' || b == '\t' || b == '\r' || b == '\n') {
+                return;
+            }
+            if (mChunkLength == CHUNK_SIZE) {
+                flushChunk();
+            }
+            mChunk[mChunkLength++] = (byte) b;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            for (int i = off; i < off + len; i++) {
+                write(b[i]);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (mClosed) {
+                return;
+            }
+            mClosed = true;
+            try {
+                flushChunk();
+            } finally {
+                out.close();
+            }
+        }
+
+        private void flushChunk() throws IOException {
+            if (mChunkLength == 0) {
+                return;
+            }
+            final byte[] decoded;
+            try {
+                decoded = Base64.decode(mChunk, 0, mChunkLength, Base64.DEFAULT);
+            } catch (IllegalArgumentException e) {
+                throw new Base64DataException(e.getMessage());
+            }
+            out.write(decoded);
+            mChunkLength = 0;
         }
     }
 
+    private static final Charset INTERMEDIATE_CHARSET =
+            Charset.forName(VCardConfig.DEFAULT_INTERMEDIATE_CHARSET);
+
     private static final String DEFAULT_ENCODING = "8BIT";
     private static final String DEFAULT_CHARSET = "UTF-8";
 
-    protected final String mIntermediateCharset;
-
     private final List<VCardInterpreter> mInterpreterList = new ArrayList<VCardInterpreter>();
-    private boolean mCanceled;
+
+    /**
+     * Set by {@link #cancel()} from another thread. Read without lock for each line of long
+     * values, so it is volatile instead of guarded by a monitor.
+     */
+    private volatile boolean mCanceled;
+
+    private VCardProgressListener mProgressListener;
+
+    /**
+     * Position of {@link #mReader} at which {@link #mProgressListener} is called next.
+     */
+    private long mNextProgressPosition;
+
+    /**
+     * Where BASE64 values are decoded into. When null, they are decoded into byte arrays
+     * set to {@link VCardProperty#setByteValue(byte[])}.
+     */
+    private VCardBinarySink mBinarySink;
+
+    /**
+     * When true, one {@link VCardProperty} object per nest depth is reused for every property.
+     */
+    private boolean mReuseProperties;
+
+    /**
+     * Chooses the parser for the VERSION of each entry. Set only by {@link VCardParser_Auto}.
+     */
+    /* package */ interface VersionSelector {
+        /**
+         * Makes the returned parser the one parsing the input from now on.
+         *
+         * @return The parser for the version, or null when the version is not supported.
+         */
+        VCardParserImpl_V21 select(String version);
+    }
+
+    /**
+     * When non-null, an entry whose VERSION differs from this parser is passed to the parser
+     * chosen by this object, instead of throwing {@link VCardVersionException}.
+     */
+    private VersionSelector mVersionSelector;
+
+    /**
+     * When non-null, properties rejected by this object are skipped without being decoded.
+     */
+    private VCardPropertyFilter mPropertyFilter;
+
+    /**
+     * When non-null, counters of this parser are added to this object.
+     */
+    private VCardParserMetrics mMetrics;
+
+    private VCardParseLimits mLimits = new VCardParseLimits();
+
+    /**
+     * Values moved into temporary files by the default sink, whose files are deleted by
+     * {@link #releaseSpilledValues()} when parsing ends.
+     */
+    private final List<VCardBinaryValue> mSpilledValues = new ArrayList<VCardBinaryValue>();
+
+    /**
+     * The number of properties in the current top-level entry.
+     */
+    private int mPropertyCount;
+
+    /**
+     * True when the property being read exceeds {@link #mLimits} and is going to be dropped.
+     */
+    private boolean mOversizedProperty;
+
+    /**
+     * Receives parameters over {@link VCardParseLimits#getMaxParameterCount()} of a property
+     * being dropped, so that ENCODING among them still takes effect.
+     */
+    private VCardProperty mDroppedParameters;
+
+    /**
+     * When non-null, errors in entries are reported to this listener instead of being thrown.
+     */
+    private VCardErrorListener mErrorListener;
+
+    /**
+     * The nest depth of the entry being skipped after an error, or 0.
+     */
+    private int mSkippedDepth;
+
+    /**
+     * Position and line count of {@link #mReader} already added to {@link #mMetrics}.
+     */
+    private long mReportedPosition;
+    private long mReportedLineCount;
+    private final List<VCardProperty> mReusablePropertyList = new ArrayList<VCardProperty>();
 
     /**
      * <p>
@@ -130,6 +875,12 @@ import java.util.Set;
      */
     protected CustomBufferedReader mReader;
 
+    /**
+     * The number of entries which have started but not ended yet. More than one when the
+     * parser is in nested vCards allowed in vCard 2.1.
+     */
+    private int mNestDepth;
+
     /**
      * <p>
      * Set for storing unkonwn TYPE attributes, which is not acceptable in vCard
@@ -158,14 +909,13 @@ import java.util.Set;
     }
 
     public VCardParserImpl_V21(int vcardType) {
-        mIntermediateCharset =  VCardConfig.DEFAULT_INTERMEDIATE_CHARSET;
     }
 
     /**
      * @return true when a given property name is a valid property name.
      */
     protected boolean isValidPropertyName(final String propertyName) {
-        if (!(getKnownPropertyNameSet().contains(propertyName.toUpperCase()) ||
+        if (!(getKnownPropertyNameSet().contains(VCardNameTable.toUpperCase(propertyName)) ||
                 propertyName.startsWith("X-"))
                 && !mUnknownTypeSet.contains(propertyName)) {
             mUnknownTypeSet.add(propertyName);
@@ -204,31 +954,175 @@ import java.util.Set;
     }
 
     /**
-     * <code>
-     * vcard = "BEGIN" [ws] ":" [ws] "VCARD" [ws] 1*CRLF
-     *         items *CRLF
-     *         "END" [ws] ":" [ws] "VCARD"
-     * </code>
-     * @return False when reaching end of file.
+     * <code>
+     * vcard = "BEGIN" [ws] ":" [ws] "VCARD" [ws] 1*CRLF
+     *         items *CRLF
+     *         "END" [ws] ":" [ws] "VCARD"
+     * </code>
+     * @return False when reaching end of file.
+     */
+    private boolean parseOneVCard() throws IOException, VCardException {
+        if (!parseNext()) {
+            return false;
+        }
+        while (mNestDepth > 0) {
+            parseNext();
+        }
+        return true;
+    }
+
+    /**
+     * <p>
+     * Parses the input by one step: "BEGIN:VCARD" of a top-level entry, or one item in an entry
+     * including "BEGIN:VCARD" and "END:VCARD" of nested entries. Registered interpreters receive
+     * the events for the step before this method returns.
+     * </p>
+     * <p>
+     * Both push-style parse() and pull-style {@link VCardReader} drive parsing via this method.
+     * </p>
+     * @return False when reaching end of file outside entries.
+     */
+    /* package */ boolean parseNext() throws IOException, VCardException {
+        final long position = mReader.getPosition();
+        // Read at every step, as the limits may be modified while parsing.
+        mReader.setMaxLineLength(mLimits.getMaxLineLength());
+        try {
+            return parseNextInternal();
+        } catch (CustomBufferedReader.LineTooLongException e) {
+            throw new VCardLimitExceededException(e.getMessage());
+        } catch (VCardException e) {
+            if (mErrorListener == null || mNestDepth == 0 || e instanceof VCardCanceledException
+                    || e instanceof VCardVersionException
+                    || e instanceof VCardLimitExceededException) {
+                throw e;
+            }
+            recoverFromError(e, position);
+            return true;
+        }
+    }
+
+    /**
+     * Ends the entries being parsed, reports the error, and makes the next step skip lines
+     * up to the end of the top-level entry.
+     */
+    private void recoverFromError(VCardException e, long position) {
+        Log.w(LOG_TAG, "Skipping the rest of the entry: " + e.getMessage());
+        mSkippedDepth = mNestDepth;
+        while (mNestDepth > 0) {
+            handleNestEnd();
+        }
+        mErrorListener.onError(e, position);
+    }
+
+    /**
+     * Ends the entries left open when parsing stops in the middle of them (e.g. on
+     * cancellation), so that interpreters receive {@link VCardInterpreter#onEntryEnded()} for
+     * every {@link VCardInterpreter#onEntryStarted()}.
+     */
+    /* package */ void endOpenEntries() {
+        mSkippedDepth = 0;
+        while (mNestDepth > 0) {
+            handleNestEnd();
+        }
+    }
+
+    /**
+     * Skips lines until "END:VCARD" of the entry in which an error has been found, counting
+     * nested entries. No event is emitted.
+     * <p>
+     * When "BEGIN:VCARD" starts a line while only the top-level entry is left open, the entry
+     * is assumed to lack its "END:VCARD" and a new top-level entry is started with the line,
+     * so that one truncated entry does not hide the rest of the input. Only an entry right
+     * after an empty AGENT property is still skipped as a nested one.
+     * </p>
+     */
+    private void skipToEndOfEntry() throws IOException, VCardException {
+        int depth = mSkippedDepth;
+        boolean afterAgent = false;
+        while (depth > 0) {
+            checkProgress();
+            final String line = getLine();
+            if (line == null) {
+                break;
+            }
+            if (line.trim().length() == 0) {
+                continue;
+            }
+            final boolean isAgent = isEmptyAgentLine(line);
+            final boolean nested = afterAgent;
+            afterAgent = isAgent;
+            final int colon = line.indexOf(':');
+            if (colon < 0 || !line.substring(colon + 1).trim().equalsIgnoreCase("VCARD")) {
+                continue;
+            }
+            final String name = line.substring(0, colon).trim();
+            if (name.equalsIgnoreCase(VCardConstants.PROPERTY_BEGIN)) {
+                if (depth == 1 && !nested && !Character.isWhitespace(line.charAt(0))) {
+                    mSkippedDepth = 0;
+                    startEntry();
+                    return;
+                }
+                depth++;
+            } else if (name.equalsIgnoreCase(VCardConstants.PROPERTY_END)) {
+                depth--;
+            }
+        }
+        // Updated only after all the lines are read, so that VCardIncrementalParser can
+        // retry this step.
+        mSkippedDepth = 0;
+    }
+
+    /**
+     * @return True when the line is an AGENT property without value, which a nested entry
+     * follows in vCard 2.1 (e.g. "AGENT:").
+     */
+    private static boolean isEmptyAgentLine(String line) {
+        final int colon = line.indexOf(':');
+        if (colon < 0 || line.substring(colon + 1).trim().length() > 0) {
+            return false;
+        }
+        int end = line.indexOf(';');
+        if (end < 0 || end > colon) {
+            end = colon;
+        }
+        final String name = line.substring(line.lastIndexOf('.', end - 1) + 1, end).trim();
+        return name.equalsIgnoreCase(VCardConstants.PROPERTY_AGENT);
+    }
+
+    private boolean parseNextInternal() throws IOException, VCardException {
+        checkProgress();
+        if (mSkippedDepth > 0) {
+            skipToEndOfEntry();
+            return true;
+        }
+        if (mNestDepth == 0) {
+            // allow parsing of vcards that have mime data leading up to BEGIN:VCARD
+            boolean allowGarbage = true;
+            if (!readBeginVCard(allowGarbage)) {
+                reportInput();
+                reportProgress();
+                return false;
+            }
+            startEntry();
+            return true;
+        }
+        try {
+            parseItem();
+        } catch (VCardInvalidCommentLineException e) {
+            Log.e(LOG_TAG, "Invalid line which looks like some comment was found. Ignored.");
+        }
+        return true;
+    }
+
+    /**
+     * Starts a top-level entry after its "BEGIN:VCARD" has been read.
      */
-    private boolean parseOneVCard() throws IOException, VCardException {
+    private void startEntry() {
         // reset for this entire vCard.
         mCurrentEncoding = DEFAULT_ENCODING;
         mCurrentCharset = DEFAULT_CHARSET;
-
-        // allow parsing of vcards that have mime data leading up to BEGIN:VCARD
-        boolean allowGarbage = true;
-        if (!readBeginVCard(allowGarbage)) {
-            return false;
-        }
-        for (VCardInterpreter interpreter : mInterpreterList) {
-            interpreter.onEntryStarted();
-        }
-        parseItems();
-        for (VCardInterpreter interpreter : mInterpreterList) {
-            interpreter.onEntryEnded();
-        }
-        return true;
+        mPropertyCount = 0;
+        handleNest();
     }
 
     /**
@@ -241,6 +1135,7 @@ import java.util.Set;
         String line;
         do {
             while (true) {
+                checkProgress();
                 line = getLine();
                 if (line == null) {
                     return false;
@@ -267,33 +1162,6 @@ import java.util.Set;
         throw new VCardException("Reached where must not be reached.");
     }
 
-    /**
-     * Parses lines other than the first "BEGIN:VCARD". Takes care of "END:VCARD"n and
-     * "BEGIN:VCARD" in nested vCard.
-     */
-    /*
-     * items = *CRLF item / item
-     *
-     * Note: BEGIN/END aren't include in the original spec while this method handles them.
-     */
-    protected void parseItems() throws IOException, VCardException {
-        boolean ended = false;
-
-        try {
-            ended = parseItem();
-        } catch (VCardInvalidCommentLineException e) {
-            Log.e(LOG_TAG, "Invalid line which looks like some comment was found. Ignored.");
-        }
-
-        while (!ended) {
-            try {
-                ended = parseItem();
-            } catch (VCardInvalidCommentLineException e) {
-                Log.e(LOG_TAG, "Invalid line which looks like some comment was found. Ignored.");
-            }
-        }
-    }
-
     /*
      * item = [groups "."] name [params] ":" value CRLF / [groups "."] "ADR"
      * [params] ":" addressparts CRLF / [groups "."] "ORG" [params] ":" orgparts
@@ -303,11 +1171,12 @@ import java.util.Set;
     protected boolean parseItem() throws IOException, VCardException {
         // Reset for an item.
         mCurrentEncoding = DEFAULT_ENCODING;
+        mOversizedProperty = false;
 
         final String line = getNonEmptyLine();
         final VCardProperty propertyData = constructPropertyData(line);
 
-        final String propertyNameUpper = propertyData.getName().toUpperCase();
+        final String propertyNameUpper = VCardNameTable.toUpperCase(propertyData.getName());
         final String propertyRawValue = propertyData.getRawValue();
 
         if (propertyNameUpper.equals(VCardConstants.PROPERTY_BEGIN)) {
@@ -318,6 +1187,7 @@ import java.util.Set;
             }
         } else if (propertyNameUpper.equals(VCardConstants.PROPERTY_END)) {
             if (propertyRawValue.equalsIgnoreCase("VCARD")) {
+                handleNestEnd();
                 return true;  // Ended.
             } else {
                 throw new VCardException("Unknown END type: " + propertyRawValue);
@@ -334,27 +1204,74 @@ import java.util.Set;
         if (propertyNameUpper.equals(VCardConstants.PROPERTY_AGENT)) {
             handleAgent(property);
         } else if (isValidPropertyName(propertyNameUpper)) {
+            if (mPropertyCount >= mLimits.getMaxPropertyCount()) {
+                if (!mLimits.isSkipOversizedProperties()) {
+                    throw new VCardLimitExceededException(
+                            "More than " + mLimits.getMaxPropertyCount() + " properties");
+                }
+                Log.w(LOG_TAG, "Too many properties. Dropped " + propertyNameUpper);
+                skipPropertyValue(property, propertyNameUpper);
+                return;
+            }
             if (propertyNameUpper.equals(VCardConstants.PROPERTY_VERSION) &&
                     !propertyRawValue.equals(getVersionString())) {
-                throw new VCardVersionException(
-                        "Incompatible version: " + propertyRawValue + " != " + getVersionString());
+                final VCardParserImpl_V21 next = (mVersionSelector != null
+                        ? mVersionSelector.select(propertyRawValue) : null);
+                if (next == null) {
+                    throw new VCardVersionException("Incompatible version: "
+                            + propertyRawValue + " != " + getVersionString());
+                }
+                // The rest of this entry follows the grammar of the version.
+                next.takeOver(this);
+                next.handlePropertyValue(property, propertyNameUpper);
+            } else {
+                handlePropertyValue(property, propertyNameUpper);
+            }
+            // Counted after the value is read, as reading may be retried by
+            // VCardIncrementalParser.
+            mPropertyCount++;
+            if (mMetrics != null) {
+                mMetrics.addProperty(propertyNameUpper);
             }
-            handlePropertyValue(property, propertyNameUpper);
         } else {
             throw new VCardException("Unknown property name: \"" + propertyNameUpper + "\"");
         }
     }
 
-    private void handleNest() throws IOException, VCardException {
+    private void handleNest() {
+        mNestDepth++;
         for (VCardInterpreter interpreter : mInterpreterList) {
             interpreter.onEntryStarted();
         }
-        parseItems();
+    }
+
+    private void handleNestEnd() {
+        mNestDepth--;
+        if (mMetrics != null) {
+            mMetrics.addEntry();
+            if (mNestDepth == 0) {
+                reportInput();
+            }
+        }
         for (VCardInterpreter interpreter : mInterpreterList) {
             interpreter.onEntryEnded();
         }
     }
 
+    /**
+     * Adds bytes and lines read since the last call to {@link #mMetrics}.
+     */
+    /* package */ void reportInput() {
+        if (mMetrics == null || mReader == null) {
+            return;
+        }
+        final long position = mReader.getPosition();
+        final long lineCount = mReader.getLineCount();
+        mMetrics.addInput(position - mReportedPosition, lineCount - mReportedLineCount);
+        mReportedPosition = position;
+        mReportedLineCount = lineCount;
+    }
+
     // For performance reason, the states for group and property name are merged into one.
     static private final int STATE_GROUP_OR_PROPERTY_NAME = 0;
     static private final int STATE_PARAMS = 1;
@@ -362,7 +1279,7 @@ import java.util.Set;
     static private final int STATE_PARAMS_IN_DQUOTE = 2;
 
     protected VCardProperty constructPropertyData(String line) throws VCardException {
-        final VCardProperty propertyData = new VCardProperty();
+        final VCardProperty propertyData = obtainProperty();
 
         final int length = line.length();
         if (length > 0 && line.charAt(0) == '#') {
@@ -371,6 +1288,7 @@ import java.util.Set;
 
         int state = STATE_GROUP_OR_PROPERTY_NAME;
         int nameIndex = 0;
+        int paramCount = 0;
 
         // This loop is developed so that we don't have to take care of bottle neck here.
         // Refactor carefully when you need to do so.
@@ -379,7 +1297,8 @@ import java.util.Set;
             switch (state) {
                 case STATE_GROUP_OR_PROPERTY_NAME: {
                     if (ch == ':') {  // End of a property name.
-                        final String propertyName = line.substring(nameIndex, i);
+                        final String propertyName =
+                                VCardNameTable.canonicalize(line, nameIndex, i);
                         propertyData.setName(propertyName);
                         propertyData.setRawValue( i < length - 1 ? line.substring(i + 1) : "");
                         return propertyData;
@@ -392,7 +1311,8 @@ import java.util.Set;
                         }
                         nameIndex = i + 1;  // Next should be another group or a property name.
                     } else if (ch == ';') {  // End of property name and beginneng of parameters.
-                        final String propertyName = line.substring(nameIndex, i);
+                        final String propertyName =
+                                VCardNameTable.canonicalize(line, nameIndex, i);
                         propertyData.setName(propertyName);
                         nameIndex = i + 1;
                         state = STATE_PARAMS;  // Start parameter parsing.
@@ -408,10 +1328,12 @@ import java.util.Set;
                         }
                         state = STATE_PARAMS_IN_DQUOTE;
                     } else if (ch == ';') {  // Starts another param.
-                        handleParams(propertyData, line.substring(nameIndex, i));
+                        handleParams(getParameterTarget(propertyData, paramCount++),
+                                line.substring(nameIndex, i));
                         nameIndex = i + 1;
                     } else if (ch == ':') {  // End of param and beginenning of values.
-                        handleParams(propertyData, line.substring(nameIndex, i));
+                        handleParams(getParameterTarget(propertyData, paramCount++),
+                                line.substring(nameIndex, i));
                         propertyData.setRawValue(i < length - 1 ? line.substring(i + 1) : "");
                         return propertyData;
                     }
@@ -433,6 +1355,69 @@ import java.util.Set;
         throw new VCardInvalidLineException("Invalid line: \"" + line + "\"");
     }
 
+    /**
+     * @return The property to which the parameter at the given index should be added.
+     */
+    private VCardProperty getParameterTarget(VCardProperty property, int index)
+            throws VCardLimitExceededException {
+        if (index < mLimits.getMaxParameterCount()) {
+            return property;
+        }
+        if (!mLimits.isSkipOversizedProperties()) {
+            throw new VCardLimitExceededException("More than "
+                    + mLimits.getMaxParameterCount() + " parameters in " + property.getName());
+        }
+        mOversizedProperty = true;
+        if (mDroppedParameters == null) {
+            mDroppedParameters = new VCardProperty();
+        }
+        mDroppedParameters.clear();
+        return mDroppedParameters;
+    }
+
+    /**
+     * Checks the length of a value being read against {@link VCardParseLimits}. Once this
+     * returns false, the caller reads the rest of the value without keeping it, and
+     * the property is dropped.
+     *
+     * @param maxLength {@link VCardParseLimits#getMaxValueLength()}, or the encoded length
+     * corresponding to {@link VCardParseLimits#getMaxBinaryLength()}.
+     */
+    protected boolean isValueLengthAllowed(long length, long maxLength)
+            throws VCardLimitExceededException {
+        if (length <= maxLength) {
+            return true;
+        }
+        if (!mLimits.isSkipOversizedProperties()) {
+            throw new VCardLimitExceededException("Value longer than " + maxLength + " chars");
+        }
+        mOversizedProperty = true;
+        return false;
+    }
+
+    protected long getMaxValueLength() {
+        return mLimits.getMaxValueLength();
+    }
+
+    /**
+     * @return The number of BASE64 chars encoding {@link VCardParseLimits#getMaxBinaryLength()}
+     * bytes.
+     */
+    protected long getMaxEncodedBinaryLength() {
+        return (mLimits.getMaxBinaryLength() + 2L) / 3 * 4;
+    }
+
+    /**
+     * @return True when the property has been read past but exceeds the limits.
+     */
+    private boolean dropOversizedProperty(VCardProperty property) {
+        if (!mOversizedProperty) {
+            return false;
+        }
+        Log.w(LOG_TAG, "Dropped property exceeding limits: " + property.getName());
+        return true;
+    }
+
     /*
      * params = ";" [ws] paramlist paramlist = paramlist [ws] ";" [ws] param /
      * param param = "TYPE" [ws] "=" [ws] ptypeval / "VALUE" [ws] "=" [ws]
@@ -442,16 +1427,24 @@ import java.util.Set;
      */
     protected void handleParams(VCardProperty propertyData, String params)
             throws VCardException {
-        final String[] strArray = params.split("=", 2);
-        if (strArray.length == 2) {
-            final String paramName = strArray[0].trim().toUpperCase();
-            String paramValue = strArray[1].trim();
+        final int equalIndex = params.indexOf('=');
+        if (equalIndex >= 0) {
+            int nameStart = 0;
+            int nameEnd = equalIndex;
+            while (nameStart < nameEnd && params.charAt(nameStart) <= ' ') {
+                nameStart++;
+            }
+            while (nameEnd > nameStart && params.charAt(nameEnd - 1) <= ' ') {
+                nameEnd--;
+            }
+            final String paramName = VCardNameTable.toUpperCase(params, nameStart, nameEnd);
+            String paramValue = params.substring(equalIndex + 1).trim();
             if (paramName.equals("TYPE")) {
                 handleType(propertyData, paramValue);
             } else if (paramName.equals("VALUE")) {
                 handleValue(propertyData, paramValue);
             } else if (paramName.equals("ENCODING")) {
-                handleEncoding(propertyData, paramValue.toUpperCase());
+                handleEncoding(propertyData, VCardNameTable.toUpperCase(paramValue));
             } else if (paramName.equals("CHARSET")) {
                 handleCharset(propertyData, paramValue);
             } else if (paramName.equals("LANGUAGE")) {
@@ -462,7 +1455,7 @@ import java.util.Set;
                 throw new VCardException("Unknown type \"" + paramName + "\"");
             }
         } else {
-            handleParamWithoutName(propertyData, strArray[0]);
+            handleParamWithoutName(propertyData, params);
         }
     }
 
@@ -477,20 +1470,26 @@ import java.util.Set;
      * ptypeval = knowntype / "X-" word
      */
     protected void handleType(VCardProperty propertyData, final String ptypeval) {
-        if (!(getKnownTypeSet().contains(ptypeval.toUpperCase())
+        final int slot = VCardNameTable.lookupSlot(ptypeval, 0, ptypeval.length());
+        final String canonical = (slot >= 0 ? VCardNameTable.getName(slot) : null);
+        if (!(getKnownTypeSet().contains(canonical != null ? canonical : ptypeval.toUpperCase())
                 || ptypeval.startsWith("X-"))
                 && !mUnknownTypeSet.contains(ptypeval)) {
             mUnknownTypeSet.add(ptypeval);
             Log.w(LOG_TAG, String.format("TYPE unsupported by %s: %s", getVersion(), ptypeval));
         }
-        propertyData.addParameter(VCardConstants.PARAM_TYPE, ptypeval);
+        // Values already in upper case are given as the canonical instances, with the bit
+        // found by the same lookup.
+        propertyData.addType(
+                (canonical != null && canonical.equals(ptypeval) ? canonical : ptypeval),
+                (slot >= 0 ? VCardNameTable.getTypeBit(slot) : 0));
     }
 
     /*
      * pvalueval = "INLINE" / "URL" / "CONTENT-ID" / "CID" / "X-" word
      */
     protected void handleValue(VCardProperty propertyData, final String pvalueval) {
-        if (!(getKnownValueSet().contains(pvalueval.toUpperCase())
+        if (!(getKnownValueSet().contains(VCardNameTable.toUpperCase(pvalueval))
                 || pvalueval.startsWith("X-")
                 || mUnknownValueSet.contains(pvalueval))) {
             mUnknownValueSet.add(pvalueval);
@@ -509,7 +1508,7 @@ import java.util.Set;
                 pencodingval.startsWith("X-")) {
             propertyData.addParameter(VCardConstants.PARAM_ENCODING, pencodingval);
             // Update encoding right away, as this is needed to understanding other params.
-            mCurrentEncoding = pencodingval.toUpperCase();
+            mCurrentEncoding = VCardNameTable.toUpperCase(pencodingval);
         } else {
             throw new VCardException("Unknown encoding \"" + pencodingval + "\"");
         }
@@ -568,11 +1567,99 @@ import java.util.Set;
         propertyData.addParameter(paramName, paramValue);
     }
 
+    // Decoders given to each property, so that values are decoded only when an interpreter
+    // asks for them. They depend only on the version of this object.
+    private final VCardProperty.ValueDecoder mQuotedPrintableDecoder =
+            new VCardProperty.ValueDecoder() {
+        @Override
+        public List<String> decode(String encodedValue, String targetCharset) {
+            final VCardParserMetrics metrics = mMetrics;
+            final long start = (metrics != null ? System.nanoTime() : 0);
+            final List<String> valueList = new ArrayList<String>(1);
+            valueList.add(VCardUtils.parseQuotedPrintable(encodedValue, false,
+                    VCardConfig.DEFAULT_INTERMEDIATE_CHARSET, targetCharset));
+            reportDecodeTime(metrics, VCardConstants.PARAM_ENCODING_QP, start);
+            return valueList;
+        }
+    };
+
+    private final VCardProperty.ValueDecoder mTextDecoder = new VCardProperty.ValueDecoder() {
+        @Override
+        public List<String> decode(String encodedValue, String targetCharset) {
+            // Charset conversion is measured separately, so only unescaping is timed here.
+            final String converted = convertCharset(encodedValue, targetCharset);
+            final VCardParserMetrics metrics = mMetrics;
+            final long start = (metrics != null ? System.nanoTime() : 0);
+            final List<String> valueList = new ArrayList<String>(1);
+            valueList.add(maybeUnescapeText(converted));
+            reportDecodeTime(metrics, VCardParserMetrics.ENCODING_8BIT, start);
+            return valueList;
+        }
+    };
+
+    private final VCardProperty.ValueDecoder mQuotedPrintableListDecoder =
+            new VCardProperty.ValueDecoder() {
+        @Override
+        public List<String> decode(String encodedValue, String targetCharset) {
+            final VCardParserMetrics metrics = mMetrics;
+            final long start = (metrics != null ? System.nanoTime() : 0);
+            // We split Quoted-Printable String using semi-colon before decoding it, as
+            // the Quoted-Printable may have semi-colon, which confuses splitter.
+            final List<String> valueList =
+                    VCardUtils.constructListFromValue(encodedValue, getVersion());
+            for (int i = 0; i < valueList.size(); i++) {
+                valueList.set(i, VCardUtils.parseQuotedPrintable(valueList.get(i), false,
+                        VCardConfig.DEFAULT_INTERMEDIATE_CHARSET, targetCharset));
+            }
+            reportDecodeTime(metrics, VCardConstants.PARAM_ENCODING_QP, start);
+            return valueList;
+        }
+    };
+
+    private final VCardProperty.ValueDecoder mListDecoder = new VCardProperty.ValueDecoder() {
+        @Override
+        public List<String> decode(String encodedValue, String targetCharset) {
+            final String converted = convertCharset(encodedValue, targetCharset);
+            final VCardParserMetrics metrics = mMetrics;
+            final long start = (metrics != null ? System.nanoTime() : 0);
+            final List<String> valueList =
+                    VCardUtils.constructListFromValue(converted, getVersion());
+            reportDecodeTime(metrics, VCardParserMetrics.ENCODING_8BIT, start);
+            return valueList;
+        }
+    };
+
+    private String convertCharset(String value, String targetCharset) {
+        final VCardParserMetrics metrics = mMetrics;
+        if (metrics == null) {
+            return VCardUtils.convertStringCharset(
+                    value, VCardConfig.DEFAULT_INTERMEDIATE_CHARSET, targetCharset);
+        }
+        final long start = System.nanoTime();
+        final String converted = VCardUtils.convertStringCharset(
+                value, VCardConfig.DEFAULT_INTERMEDIATE_CHARSET, targetCharset);
+        metrics.addCharsetConversionNanos(System.nanoTime() - start);
+        return converted;
+    }
+
+    private static void reportDecodeTime(
+            VCardParserMetrics metrics, String encoding, long start) {
+        if (metrics != null) {
+            metrics.addDecodeNanos(encoding, System.nanoTime() - start);
+        }
+    }
+
+    /**
+     * @param propertyName The upper-case name of the property.
+     */
     protected void handlePropertyValue(VCardProperty property, String propertyName)
             throws IOException, VCardException {
-        final String propertyNameUpper = property.getName().toUpperCase();
+        final String propertyNameUpper = propertyName;
+        if (!isAcceptedProperty(propertyNameUpper)) {
+            skipPropertyValue(property, propertyNameUpper);
+            return;
+        }
         String propertyRawValue = property.getRawValue();
-        final String sourceCharset = VCardConfig.DEFAULT_INTERMEDIATE_CHARSET;
         final Collection<String> charsetCollection =
                 property.getParameters(VCardConstants.PARAM_CHARSET);
         String targetCharset =
@@ -585,7 +1672,7 @@ import java.util.Set;
         if (propertyNameUpper.equals(VCardConstants.PROPERTY_ADR)
                 || propertyNameUpper.equals(VCardConstants.PROPERTY_ORG)
                 || propertyNameUpper.equals(VCardConstants.PROPERTY_N)) {
-            handleAdrOrgN(property, propertyRawValue, sourceCharset, targetCharset);
+            handleAdrOrgN(property, propertyRawValue, targetCharset);
             return;
         }
 
@@ -598,11 +1685,11 @@ import java.util.Set;
                         VCardUtils.appearsLikeAndroidVCardQuotedPrintable(propertyRawValue))
                 ) {
             final String quotedPrintablePart = getQuotedPrintablePart(propertyRawValue);
-            final String propertyEncodedValue =
-                    VCardUtils.parseQuotedPrintable(quotedPrintablePart,
-                            false, sourceCharset, targetCharset);
+            if (dropOversizedProperty(property)) {
+                return;
+            }
             property.setRawValue(quotedPrintablePart);
-            property.setValues(propertyEncodedValue);
+            property.setEncodedValue(mQuotedPrintableDecoder, quotedPrintablePart, targetCharset);
             for (VCardInterpreter interpreter : mInterpreterList) {
                 interpreter.onPropertyCreated(property);
             }
@@ -611,12 +1698,61 @@ import java.util.Set;
             // It is very rare, but some BASE64 data may be so big that
             // OutOfMemoryError occurs. To ignore such cases, use try-catch.
             try {
-                final String base64Property = getBase64(propertyRawValue);
+                final VCardParserMetrics metrics = mMetrics;
+                final long start = (metrics != null ? System.nanoTime() : 0);
+                final VCardBinarySink sink =
+                        (mBinarySink != null ? mBinarySink : getDefaultBinarySink());
+                // When the rest of the value has not been fed yet, the value is parsed again
+                // from its beginning later. Bytes written to a sink given by the caller cannot
+                // be taken back, so they are kept here until the value completes.
+                final ByteArrayOutputStream stagingStream =
+                        (mBinarySink != null && mReader.mayNeedMoreInput()
+                                ? new ByteArrayOutputStream() : null);
+                VCardBinaryValue binaryValue =
+                        (stagingStream == null ? sink.createValue(property) : null);
+                OutputStream valueStream =
+                        (stagingStream == null ? binaryValue.openOutputStream() : stagingStream);
+                boolean completed = false;
                 try {
-                    property.setByteValue(Base64.decode(base64Property, Base64.DEFAULT));
-                } catch (IllegalArgumentException e) {
+                    final OutputStream os = new Base64DecodingOutputStream(valueStream);
+                    readBase64(propertyRawValue, os);
+                    if (!mOversizedProperty) {
+                        os.close();
+                        if (stagingStream != null) {
+                            binaryValue = sink.createValue(property);
+                            valueStream = binaryValue.openOutputStream();
+                            stagingStream.writeTo(valueStream);
+                            valueStream.close();
+                        }
+                        completed = true;
+                    }
+                } catch (Base64DataException e) {
                     throw new VCardException("Decode error on base64 photo: " + propertyRawValue);
+                } finally {
+                    if (!completed) {
+                        // Do not decode the rest of the value, which may be incomplete.
+                        try {
+                            valueStream.close();
+                        } catch (IOException e) {
+                            Log.w(LOG_TAG, "Failed to close binary value: " + e.getMessage());
+                        }
+                        if (binaryValue != null) {
+                            binaryValue.release();
+                        }
+                    }
+                }
+                if (dropOversizedProperty(property)) {
+                    return;
+                }
+                property.setBinaryValue(binaryValue);
+                if (mBinarySink == null) {
+                    if (binaryValue.getLength() <= mLimits.getSpillThreshold()) {
+                        property.setByteValue(binaryValue.getBytes());
+                    } else {
+                        mSpilledValues.add(binaryValue);
+                    }
                 }
+                reportDecodeTime(metrics, VCardConstants.PARAM_ENCODING_BASE64, start);
                 for (VCardInterpreter interpreter : mInterpreterList) {
                     interpreter.onPropertyCreated(property);
                 }
@@ -657,80 +1793,112 @@ import java.util.Set;
             // We take care of this case more formally in vCard 3.0, so we only need to
             // do this in vCard 2.1.
             if (getVersion() == VCardConfig.VERSION_21) {
-                StringBuilder builder = null;
-                while (true) {
-                    final String nextLine = peekLine();
-                    // We don't need to care too much about this exceptional case,
-                    // but we should not wrongly eat up "END:VCARD", since it critically
-                    // breaks this parser's state machine.
-                    // Thus we roughly look over the next line and confirm it is at least not
-                    // "END:VCARD". This extra fee is worth paying. This is exceptional
-                    // anyway.
-                    if (!TextUtils.isEmpty(nextLine) &&
-                            nextLine.charAt(0) == ' ' &&
-                            !"END:VCARD".contains(nextLine.toUpperCase())) {
-                        getLine();  // Drop the next line.
-
-                        if (builder == null) {
-                            builder = new StringBuilder();
-                            builder.append(propertyRawValue);
-                        }
-                        builder.append(nextLine.substring(1));
-                    } else {
-                        break;
-                    }
-                }
-                if (builder != null) {
-                    propertyRawValue = builder.toString();
-                }
+                propertyRawValue = getFoldedValue(propertyRawValue);
+            }
+            if (dropOversizedProperty(property)) {
+                return;
             }
 
-            ArrayList<String> propertyValueList = new ArrayList<String>();
-            String value = maybeUnescapeText(VCardUtils.convertStringCharset(
-                    propertyRawValue, sourceCharset, targetCharset));
-            propertyValueList.add(value);
-            property.setValues(propertyValueList);
+            property.setEncodedValue(mTextDecoder, propertyRawValue, targetCharset);
             for (VCardInterpreter interpreter : mInterpreterList) {
                 interpreter.onPropertyCreated(property);
             }
         }
     }
 
-    private void handleAdrOrgN(VCardProperty property, String propertyRawValue,
-            String sourceCharset, String targetCharset) throws VCardException, IOException {
-        List<String> encodedValueList = new ArrayList<String>();
+    /**
+     * Appends lines folded as RFC 2425 describes to the given first line.
+     */
+    private String getFoldedValue(String firstString) throws IOException, VCardException {
+        StringBuilder builder = null;
+        boolean keep = isValueLengthAllowed(firstString.length(), getMaxValueLength());
+        while (true) {
+            final String nextLine = peekLine();
+            // We don't need to care too much about this exceptional case,
+            // but we should not wrongly eat up "END:VCARD", since it critically
+            // breaks this parser's state machine.
+            // Thus we roughly look over the next line and confirm it is at least not
+            // "END:VCARD". This extra fee is worth paying. This is exceptional
+            // anyway.
+            if (!TextUtils.isEmpty(nextLine) &&
+                    nextLine.charAt(0) == ' ' &&
+                    !"END:VCARD".contains(nextLine.toUpperCase())) {
+                getLine();  // Drop the next line.
+                if (!keep) {
+                    continue;
+                }
+
+                if (builder == null) {
+                    builder = new StringBuilder();
+                    builder.append(firstString);
+                }
+                builder.append(nextLine.substring(1));
+                keep = isValueLengthAllowed(builder.length(), getMaxValueLength());
+            } else {
+                break;
+            }
+        }
+        return builder != null ? builder.toString() : firstString;
+    }
+
+    /**
+     * Reads past the lines of a property rejected by {@link #mPropertyFilter}, following the
+     * same rules as {@link #handlePropertyValue(VCardProperty, String)} but without decoding
+     * the value or notifying interpreters.
+     */
+    private void skipPropertyValue(VCardProperty property, String propertyNameUpper)
+            throws IOException, VCardException {
+        final String propertyRawValue = property.getRawValue();
+        if (propertyNameUpper.equals(VCardConstants.PROPERTY_ADR)
+                || propertyNameUpper.equals(VCardConstants.PROPERTY_ORG)
+                || propertyNameUpper.equals(VCardConstants.PROPERTY_N)) {
+            if (mCurrentEncoding.equals(VCardConstants.PARAM_ENCODING_QP)) {
+                getQuotedPrintablePart(propertyRawValue);
+            } else {
+                getPotentialMultiline(propertyRawValue);
+            }
+        } else if (mCurrentEncoding.equals(VCardConstants.PARAM_ENCODING_QP) ||
+                (propertyNameUpper.equals(VCardConstants.PROPERTY_FN) &&
+                        property.getParameters(VCardConstants.PARAM_ENCODING) == null &&
+                        VCardUtils.appearsLikeAndroidVCardQuotedPrintable(propertyRawValue))) {
+            getQuotedPrintablePart(propertyRawValue);
+        } else if (mCurrentEncoding.equals(VCardConstants.PARAM_ENCODING_BASE64)
+                || mCurrentEncoding.equals(VCardConstants.PARAM_ENCODING_B)) {
+            readBase64(propertyRawValue, null);
+        } else if (getVersion() == VCardConfig.VERSION_21) {
+            getFoldedValue(propertyRawValue);
+        }
+    }
+
+    private boolean isAcceptedProperty(String propertyNameUpper) {
+        return mPropertyFilter == null || mPropertyFilter.accept(propertyNameUpper);
+    }
 
+    private void handleAdrOrgN(VCardProperty property, String propertyRawValue,
+            String targetCharset) throws VCardException, IOException {
         // vCard 2.1 does not allow QUOTED-PRINTABLE here, but some softwares/devices emit
         // such data.
         if (mCurrentEncoding.equals(VCardConstants.PARAM_ENCODING_QP)) {
             // First we retrieve Quoted-Printable String from vCard entry, which may include
             // multiple lines.
             final String quotedPrintablePart = getQuotedPrintablePart(propertyRawValue);
+            if (dropOversizedProperty(property)) {
+                return;
+            }
 
             // "Raw value" from the view of users should contain all part of QP string.
             // TODO: add test for this handling
             property.setRawValue(quotedPrintablePart);
-
-            // We split Quoted-Printable String using semi-colon before decoding it, as
-            // the Quoted-Printable may have semi-colon, which confuses splitter.
-            final List<String> quotedPrintableValueList =
-                    VCardUtils.constructListFromValue(quotedPrintablePart, getVersion());
-            for (String quotedPrintableValue : quotedPrintableValueList) {
-                String encoded = VCardUtils.parseQuotedPrintable(quotedPrintableValue,
-                        false, sourceCharset, targetCharset);
-                encodedValueList.add(encoded);
-            }
+            property.setEncodedValue(
+                    mQuotedPrintableListDecoder, quotedPrintablePart, targetCharset);
         } else {
-            final String propertyValue = VCardUtils.convertStringCharset(
-                    getPotentialMultiline(propertyRawValue), sourceCharset, targetCharset);
-            final List<String> valueList =
-                    VCardUtils.constructListFromValue(propertyValue, getVersion());
-            for (String value : valueList) {
-                encodedValueList.add(value);
+            final String value = getPotentialMultiline(propertyRawValue);
+            if (dropOversizedProperty(property)) {
+                return;
             }
+            property.setEncodedValue(mListDecoder, value, targetCharset);
         }
 
-        property.setValues(encodedValueList);
         for (VCardInterpreter interpreter : mInterpreterList) {
             interpreter.onPropertyCreated(property);
         }
@@ -768,29 +1936,39 @@ import java.util.Set;
             // remove "transport-padding"
             int pos = firstString.length() - 1;
             while (firstString.charAt(pos) != '=') {
+                pos--;
             }
             StringBuilder builder = new StringBuilder();
             builder.append(firstString.substring(0, pos + 1));
             builder.append("\r\n");
+            boolean keep = isValueLengthAllowed(builder.length(), getMaxValueLength());
             String line;
             while (true) {
+                checkProgress();
                 line = getLine();
                 if (line == null) {
                     throw new VCardException("File ended during parsing a Quoted-Printable String");
                 }
-                if (line.trim().endsWith("=")) {
+                if (!keep) {
+                    // Read past the rest of the value.
+                    if (!line.trim().endsWith("=")) {
+                        break;
+                    }
+                } else if (line.trim().endsWith("=")) {
                     // remove "transport-padding"
                     pos = line.length() - 1;
                     while (line.charAt(pos) != '=') {
+                        pos--;
                     }
                     builder.append(line.substring(0, pos + 1));
                     builder.append("\r\n");
+                    keep = isValueLengthAllowed(builder.length(), getMaxValueLength());
                 } else {
                     builder.append(line);
                     break;
                 }
             }
-            return builder.toString();
+            return keep ? builder.toString() : firstString;
         } else {
             return firstString;
         }
@@ -804,9 +1982,10 @@ import java.util.Set;
      * @return A new property, potentially built from multiple lines.
      * @throws IOException
      */
-    private String getPotentialMultiline(String firstString) throws IOException {
+    private String getPotentialMultiline(String firstString) throws IOException, VCardException {
         final StringBuilder builder = new StringBuilder();
         builder.append(firstString);
+        boolean keep = isValueLengthAllowed(builder.length(), getMaxValueLength());
 
         while (true) {
             final String line = peekLine();
@@ -824,17 +2003,32 @@ import java.util.Set;
             // contain a property name (i.e. a colon or semi-colon).
             // Consume the line.
             getLine();
-            builder.append(" ").append(line);
+            if (keep) {
+                builder.append(" ").append(line);
+                keep = isValueLengthAllowed(builder.length(), getMaxValueLength());
+            }
         }
 
         return builder.toString();
     }
 
-    protected String getBase64(String firstString) throws IOException, VCardException {
-        final StringBuilder builder = new StringBuilder();
-        builder.append(firstString);
+    /**
+     * Reads a BASE64 value starting with firstString and writes it to the given stream line
+     * by line, so that the whole encoded value is never held in memory.
+     * When os is null, the value is read and dropped.
+     */
+    protected void readBase64(String firstString, OutputStream os)
+            throws IOException, VCardException {
+        long encodedLength = firstString.length();
+        if (os != null && !isValueLengthAllowed(encodedLength, getMaxEncodedBinaryLength())) {
+            os = null;
+        }
+        if (os != null) {
+            os.write(firstString.getBytes(INTERMEDIATE_CHARSET));
+        }
 
         while (true) {
+            checkProgress();
             final String line = peekLine();
             if (line == null) {
                 throw new VCardException("File ended during parsing BASE64 binary");
@@ -866,10 +2060,16 @@ import java.util.Set;
             // Trim off any extraneous whitespace to handle 2.1 implementations
             // that use 3.0 style line continuations. This is safe because space
             // isn't a Base64 encoding value.
-            builder.append(line.trim());
+            if (os != null) {
+                final String trimmed = line.trim();
+                encodedLength += trimmed.length();
+                if (isValueLengthAllowed(encodedLength, getMaxEncodedBinaryLength())) {
+                    os.write(trimmed.getBytes(INTERMEDIATE_CHARSET));
+                } else {
+                    os = null;
+                }
+            }
         }
-
-        return builder.toString();
     }
 
     /**
@@ -899,7 +2099,7 @@ import java.util.Set;
             } else {
                 minIndex = Math.min(colonIndex, semiColonIndex);
             }
-            return line.substring(0, minIndex).toUpperCase();
+            return VCardNameTable.toUpperCase(line, 0, minIndex);
         }
         return null;
     }
@@ -915,8 +2115,10 @@ import java.util.Set;
     protected void handleAgent(final VCardProperty property) throws VCardException {
         if (!property.getRawValue().toUpperCase().contains("BEGIN:VCARD")) {
             // Apparently invalid line seen in Windows Mobile 6.5. Ignore them.
-            for (VCardInterpreter interpreter : mInterpreterList) {
-                interpreter.onPropertyCreated(property);
+            if (isAcceptedProperty(VCardConstants.PROPERTY_AGENT)) {
+                for (VCardInterpreter interpreter : mInterpreterList) {
+                    interpreter.onPropertyCreated(property);
+                }
             }
             return;
         } else {
@@ -998,34 +2200,174 @@ import java.util.Set;
         mInterpreterList.add(interpreter);
     }
 
+    public void setBinarySink(VCardBinarySink binarySink) {
+        mBinarySink = binarySink;
+    }
+
+    public void setReuseProperties(boolean reuseProperties) {
+        mReuseProperties = reuseProperties;
+    }
+
+    public void setMetrics(VCardParserMetrics metrics) {
+        mMetrics = metrics;
+    }
+
+    public void setProgressListener(VCardProgressListener listener) {
+        mProgressListener = listener;
+    }
+
+    public void setPropertyFilter(VCardPropertyFilter filter) {
+        mPropertyFilter = filter;
+    }
+
+    public void setErrorListener(VCardErrorListener listener) {
+        mErrorListener = listener;
+    }
+
+    public void setLimits(VCardParseLimits limits) {
+        mLimits = (limits != null ? limits : new VCardParseLimits());
+    }
+
+    /**
+     * @return The sink used when {@link #mBinarySink} is null, following {@link #mLimits}.
+     */
+    private VCardBinarySink getDefaultBinarySink() {
+        return (mLimits.getSpillDirectory() != null
+                ? VCardBinaryValue.spillingSink(
+                        mLimits.getSpillThreshold(), mLimits.getSpillDirectory())
+                : VCardBinaryValue.memorySink());
+    }
+
+    /**
+     * Deletes the temporary files of values spilled by the default sink. Called when parsing
+     * ends, after {@link VCardInterpreter#onVCardEnded()}, or when it stops with an exception.
+     */
+    /* package */ void releaseSpilledValues() {
+        for (VCardBinaryValue value : mSpilledValues) {
+            value.release();
+        }
+        mSpilledValues.clear();
+    }
+
+    /**
+     * <p>
+     * Throws {@link VCardCanceledException} when {@link #cancel()} has been called or the
+     * current thread has been interrupted, and calls {@link #mProgressListener} when enough
+     * bytes have been read since the last call.
+     * </p>
+     * <p>
+     * Called for every step of parsing and every line of long values, so it must stay cheap.
+     * </p>
+     */
+    protected void checkProgress() throws VCardCanceledException {
+        if (mCanceled || Thread.currentThread().isInterrupted()) {
+            throw new VCardCanceledException(mCanceled ? "Canceled" : "Interrupted");
+        }
+        if (mProgressListener != null && mReader.getPosition() >= mNextProgressPosition) {
+            reportProgress();
+        }
+    }
+
+    private void reportProgress() {
+        if (mProgressListener == null || mReader == null) {
+            return;
+        }
+        final long position = mReader.getPosition();
+        mProgressListener.onProgress(position, mReader.getSize());
+        mNextProgressPosition = position + VCardProgressListener.DEFAULT_INTERVAL;
+    }
+
+    private VCardProperty obtainProperty() {
+        if (!mReuseProperties) {
+            return new VCardProperty();
+        }
+        while (mReusablePropertyList.size() <= mNestDepth) {
+            mReusablePropertyList.add(new VCardProperty());
+        }
+        final VCardProperty property = mReusablePropertyList.get(mNestDepth);
+        property.clear();
+        return property;
+    }
+
     public void parse(InputStream is) throws IOException, VCardException {
         if (is == null) {
             throw new NullPointerException("InputStream must not be null.");
         }
+        parse(new CustomBufferedReader(is));
+    }
+
+    public void parse(ByteBuffer buffer) throws IOException, VCardException {
+        if (buffer == null) {
+            throw new NullPointerException("ByteBuffer must not be null.");
+        }
+        parse(new CustomBufferedReader(buffer));
+    }
+
+    public void parse(FileChannel channel) throws IOException, VCardException {
+        if (channel == null) {
+            throw new NullPointerException("FileChannel must not be null.");
+        }
+        parse(new CustomBufferedReader(channel));
+    }
+
+    /* package */ void setVersionSelector(VersionSelector selector) {
+        mVersionSelector = selector;
+    }
+
+    /* package */ int getNestDepth() {
+        return mNestDepth;
+    }
 
-        final InputStreamReader tmpReader = new InputStreamReader(is, mIntermediateCharset);
-        mReader = new CustomBufferedReader(tmpReader);
+    /**
+     * Continues parsing from where the given parser, sharing the reader with this object,
+     * has stopped. The given parser is left outside entries.
+     */
+    /* package */ void takeOver(VCardParserImpl_V21 previous) {
+        mReader = previous.mReader;
+        mNestDepth = previous.mNestDepth;
+        mCurrentEncoding = previous.mCurrentEncoding;
+        mCurrentCharset = previous.mCurrentCharset;
+        mReportedPosition = previous.mReportedPosition;
+        mReportedLineCount = previous.mReportedLineCount;
+        mNextProgressPosition = previous.mNextProgressPosition;
+        mPropertyCount = previous.mPropertyCount;
+        mSkippedDepth = previous.mSkippedDepth;
+        previous.mNestDepth = 0;
+        previous.mSkippedDepth = 0;
+    }
+
+    /* package */ void setReader(CustomBufferedReader reader) {
+        mReader = reader;
+        mNestDepth = 0;
+        mSkippedDepth = 0;
+        mReportedPosition = 0;
+        mReportedLineCount = 0;
+        mNextProgressPosition = 0;
+    }
+
+    private void parse(CustomBufferedReader reader) throws IOException, VCardException {
+        setReader(reader);
 
-        final long start = System.currentTimeMillis();
         for (VCardInterpreter interpreter : mInterpreterList) {
             interpreter.onVCardStarted();
         }
 
-        // vcard_file = [wsls] vcard [wsls]
-        while (true) {
-            synchronized (this) {
-                if (mCanceled) {
-                    Log.i(LOG_TAG, "Cancel request has come. exitting parse operation.");
-                    break;
+        try {
+            // vcard_file = [wsls] vcard [wsls]
+            try {
+                while (parseOneVCard()) {
                 }
+            } catch (VCardCanceledException e) {
+                Log.i(LOG_TAG, e.getMessage() + ". exitting parse operation.");
+                endOpenEntries();
             }
-            if (!parseOneVCard()) {
-                break;
-            }
-        }
+            reportInput();
 
-        for (VCardInterpreter interpreter : mInterpreterList) {
-            interpreter.onVCardEnded();
+            for (VCardInterpreter interpreter : mInterpreterList) {
+                interpreter.onVCardEnded();
+            }
+        } finally {
+            releaseSpilledValues();
         }
     }
 
@@ -1034,20 +2376,32 @@ import java.util.Set;
             throw new NullPointerException("InputStream must not be null.");
         }
 
-        final InputStreamReader tmpReader = new InputStreamReader(is, mIntermediateCharset);
-        mReader = new CustomBufferedReader(tmpReader);
+        setReader(new CustomBufferedReader(is));
 
-        final long start = System.currentTimeMillis();
         for (VCardInterpreter interpreter : mInterpreterList) {
             interpreter.onVCardStarted();
         }
-        parseOneVCard();
-        for (VCardInterpreter interpreter : mInterpreterList) {
-            interpreter.onVCardEnded();
+        try {
+            try {
+                parseOneVCard();
+            } catch (VCardCanceledException e) {
+                Log.i(LOG_TAG, e.getMessage() + ". exitting parse operation.");
+                endOpenEntries();
+            }
+            reportInput();
+            for (VCardInterpreter interpreter : mInterpreterList) {
+                interpreter.onVCardEnded();
+            }
+        } finally {
+            releaseSpilledValues();
         }
     }
 
-    public final synchronized void cancel() {
+    /**
+     * Makes the parsing thread stop at the next line, even inside a long value.
+     * May be called from any thread.
+     */
+    public final void cancel() {
         Log.i(LOG_TAG, "ParserImpl received cancel operation.");
         mCanceled = true;
     }
@@ -20,6 +20,7 @@ import android.util.Log;
 import com.android.vcard.exception.VCardException;
 
 import java.io.IOException;
+import java.io.OutputStream;
 import java.util.Set;
 
 /**
@@ -38,7 +39,6 @@ import java.util.Set;
 /* package */ class VCardParserImpl_V30 extends VCardParserImpl_V21 {
     private static final String LOG_TAG = VCardConstants.LOG_TAG;
 
-    private String mPreviousLine;
     private boolean mEmittedAgentWarning = false;
 
     public VCardParserImpl_V30() {
@@ -59,70 +59,51 @@ import java.util.Set;
         return VCardConstants.VERSION_V30;
     }
 
-    @Override
-    protected String peekLine() throws IOException {
-        if (mPreviousLine != null) {
-            String ret = mPreviousLine;
-            return ret;
-        } else {
-            return mReader.peekLine();
-        }
-    }
-
-    @Override
-    protected String getLine() throws IOException {
-        if (mPreviousLine != null) {
-            String ret = mPreviousLine;
-            mPreviousLine = null;
-            return ret;
-        } else {
-            return mReader.readLine();
-        }
-    }
-
     /**
      * vCard 3.0 requires that the line with space at the beginning of the line
      * must be combined with previous line.
+     * The line following the returned one is only peeked, so the reader holds no line
+     * belonging to this object and can be shared with parsers for other versions.
      */
     @Override
     protected String getNonEmptyLine() throws IOException, VCardException {
-        String line;
-        StringBuilder builder = null;
-        while ((line = mReader.readLine()) != null) {
+        String firstLine;
+        do {
+            checkProgress();
+            firstLine = mReader.readLine();
+            if (firstLine == null) {
+                throw new VCardException("Reached end of buffer.");
+            }
             // Skip empty lines in order to accomodate implementations that
             // send line termination variations such as \r\r\n.
-            if (line.length() == 0) {
-                continue;
-            } else if (line.charAt(0) == ' ' || line.charAt(0) == '\t') {
-                // RFC 2425 describes line continuation as \r\n followed by
-                // a single ' ' or '\t' whitespace character.
-                if (builder == null) {
-                    builder = new StringBuilder();
-                }
-                if (mPreviousLine != null) {
-                    builder.append(mPreviousLine);
-                    mPreviousLine = null;
-                }
-                builder.append(line.substring(1));
-            } else {
-                if (builder != null || mPreviousLine != null) {
-                    break;
-                }
-                mPreviousLine = line;
-            }
-        }
+        } while (firstLine.length() == 0);
 
-        String ret = null;
-        if (builder != null) {
-            ret = builder.toString();
-        } else if (mPreviousLine != null) {
-            ret = mPreviousLine;
+        // RFC 2425 describes line continuation as \r\n followed by
+        // a single ' ' or '\t' whitespace character. Continuation lines are copied from
+        // the input buffer into one line, and no String is created for each of them.
+        // The type of the value is not known yet, so the larger limit applies.
+        final long maxLength = Math.max(getMaxValueLength(), getMaxEncodedBinaryLength());
+        boolean unfolded = false;
+        boolean keep = true;
+        if (firstLine.charAt(0) == ' ' || firstLine.charAt(0) == '\t') {
+            mReader.startUnfoldedLine(firstLine, 1);
+            unfolded = true;
+            keep = isValueLengthAllowed(mReader.getUnfoldedLength(), maxLength);
         }
-        mPreviousLine = line;
-        if (ret == null) {
-            throw new VCardException("Reached end of buffer.");
+        while (mReader.hasContinuationLine()) {
+            checkProgress();
+            if (!unfolded) {
+                mReader.startUnfoldedLine(firstLine, 0);
+                unfolded = true;
+            }
+            // When the line is too long, the part read so far is returned so that
+            // the name and the parameters are available, and the property is dropped.
+            mReader.readContinuationLine(keep);
+            if (keep) {
+                keep = isValueLengthAllowed(mReader.getUnfoldedLength(), maxLength);
+            }
         }
-        return ret;
+        return (unfolded ? mReader.getUnfoldedLine() : firstLine);
     }
 
     /*
@@ -307,9 +288,12 @@ import java.util.Set;
      * data blocks, but is unnecessary here.
      */
     @Override
-    protected String getBase64(final String firstString)
+    protected void readBase64(final String firstString, final OutputStream os)
             throws IOException, VCardException {
-        return firstString;
+        if (os != null
+                && isValueLengthAllowed(firstString.length(), getMaxEncodedBinaryLength())) {
+            os.write(firstString.getBytes(VCardConfig.DEFAULT_INTERMEDIATE_CHARSET));
+        }
     }
 
     /**
@@ -325,7 +309,10 @@ import java.util.Set;
     }
 
     public static String unescapeText(final String text) {
-        StringBuilder builder = new StringBuilder();
+        if (text.indexOf('\\') < 0) {
+            return text;
+        }
+        StringBuilder builder = new StringBuilder(text.length());
         final int length = text.length();
         for (int i = 0; i < length; i++) {
             char ch = text.charAt(i);
@@ -59,7 +59,10 @@ import java.util.Set;
     public static String unescapeText(final String text) {
         // TODO: more strictly, vCard 4.0 requires different type of unescaping rule
         //       toward each property.
-        final StringBuilder builder = new StringBuilder();
+        if (text.indexOf('\\') < 0) {
+            return text;
+        }
+        final StringBuilder builder = new StringBuilder(text.length());
         final int length = text.length();
         for (int i = 0; i < length; i++) {
             char ch = text.charAt(i);
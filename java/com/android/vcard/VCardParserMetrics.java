@@ -0,0 +1,149 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * <p>
+ * Counters collected by a parser given this object via
+ * {@link VCardParser#setMetrics(VCardParserMetrics)}. Parsers collect nothing and do not read
+ * the clock unless an object is given.
+ * </p>
+ * <p>
+ * Times are measured with {@link System#nanoTime()}. Values are decoded when
+ * {@link VCardProperty#getValueList()} is first called, so decode times include decoding
+ * requested by interpreters after the parser returns. One object may be shared by parsers
+ * running in different threads (e.g. via {@link VCardParallelParser}).
+ * </p>
+ */
+public class VCardParserMetrics {
+    /**
+     * Key of {@link #getDecodeNanos(String)} for values without Quoted-Printable or BASE64
+     * (e.g. 7BIT, 8BIT), for which unescaping and splitting are measured.
+     */
+    public static final String ENCODING_8BIT = "8BIT";
+
+    private long mBytesRead;
+    private long mLineCount;
+    private long mEntryCount;
+    private long mPropertyCount;
+    private final Map<String, Integer> mPropertyCountMap = new HashMap<String, Integer>();
+    private final Map<String, Long> mDecodeNanosMap = new HashMap<String, Long>();
+    private long mCharsetConversionNanos;
+
+    /* package */ synchronized void addInput(long bytes, long lines) {
+        mBytesRead += bytes;
+        mLineCount += lines;
+    }
+
+    /* package */ synchronized void addEntry() {
+        mEntryCount++;
+    }
+
+    /* package */ synchronized void addProperty(String propertyName) {
+        mPropertyCount++;
+        final Integer count = mPropertyCountMap.get(propertyName);
+        mPropertyCountMap.put(propertyName, count != null ? count + 1 : 1);
+    }
+
+    /* package */ synchronized void addDecodeNanos(String encoding, long nanos) {
+        final Long total = mDecodeNanosMap.get(encoding);
+        mDecodeNanosMap.put(encoding, total != null ? total + nanos : nanos);
+    }
+
+    /* package */ synchronized void addCharsetConversionNanos(long nanos) {
+        mCharsetConversionNanos += nanos;
+    }
+
+    /**
+     * @return The number of bytes consumed from inputs.
+     */
+    public synchronized long getBytesRead() {
+        return mBytesRead;
+    }
+
+    /**
+     * @return The number of physical lines read, including folded and empty ones.
+     */
+    public synchronized long getLineCount() {
+        return mLineCount;
+    }
+
+    /**
+     * @return The number of entries ended, including nested ones.
+     */
+    public synchronized long getEntryCount() {
+        return mEntryCount;
+    }
+
+    public synchronized long getPropertyCount() {
+        return mPropertyCount;
+    }
+
+    /**
+     * @return The number of properties with the given upper-case name.
+     */
+    public synchronized int getPropertyCount(String propertyName) {
+        final Integer count = mPropertyCountMap.get(propertyName);
+        return count != null ? count : 0;
+    }
+
+    /**
+     * @return A copy of the map from upper-case property names to their counts.
+     */
+    public synchronized Map<String, Integer> getPropertyCountMap() {
+        return new HashMap<String, Integer>(mPropertyCountMap);
+    }
+
+    /**
+     * @param encoding {@link VCardConstants#PARAM_ENCODING_QP},
+     * {@link VCardConstants#PARAM_ENCODING_BASE64}, or {@link #ENCODING_8BIT}.
+     * @return Total nanoseconds spent decoding values with the encoding. Quoted-Printable
+     * includes charset conversion, and BASE64 includes reading the lines of the value.
+     */
+    public synchronized long getDecodeNanos(String encoding) {
+        final Long total = mDecodeNanosMap.get(encoding);
+        return total != null ? total : 0;
+    }
+
+    /**
+     * @return Total nanoseconds spent converting values without Quoted-Printable from
+     * the intermediate charset into the charset of each value.
+     */
+    public synchronized long getCharsetConversionNanos() {
+        return mCharsetConversionNanos;
+    }
+
+    public synchronized void reset() {
+        mBytesRead = 0;
+        mLineCount = 0;
+        mEntryCount = 0;
+        mPropertyCount = 0;
+        mPropertyCountMap.clear();
+        mDecodeNanosMap.clear();
+        mCharsetConversionNanos = 0;
+    }
+
+    @Override
+    public synchronized String toString() {
+        return String.format("bytes: %d, lines: %d, entries: %d, properties: %d %s, "
+                + "decode (ns): %s, charset conversion (ns): %d",
+                mBytesRead, mLineCount, mEntryCount, mPropertyCount, mPropertyCountMap,
+                mDecodeNanosMap, mCharsetConversionNanos);
+    }
+}
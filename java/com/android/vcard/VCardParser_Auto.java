@@ -0,0 +1,234 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import android.util.Log;
+
+import com.android.vcard.exception.VCardCanceledException;
+import com.android.vcard.exception.VCardException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * <p>
+ * vCard parser accepting any mix of vCard 2.1, 3.0, and 4.0 entries in one pass.
+ * </p>
+ * <p>
+ * Each entry starts with the rules of the version specified by the vCard type given to the
+ * constructor. When its VERSION property specifies another version, the rest of the entry
+ * is parsed with the rules of that version. Unlike {@link VCardParser_V21} and the others,
+ * this parser does not throw {@link com.android.vcard.exception.VCardVersionException}, so
+ * callers do not have to parse the input again with another parser.
+ * </p>
+ */
+public class VCardParser_Auto extends VCardParser {
+    private static final String LOG_TAG = VCardConstants.LOG_TAG;
+
+    private final VCardParserImpl_V21 mParserImpl21;
+    private final VCardParserImpl_V30 mParserImpl30;
+    private final VCardParserImpl_V40 mParserImpl40;
+    private final VCardParserImpl_V21 mDefaultParserImpl;
+    private final List<VCardInterpreter> mInterpreterList = new ArrayList<VCardInterpreter>();
+
+    /**
+     * The parser parsing the current entry.
+     */
+    private VCardParserImpl_V21 mCurrentParserImpl;
+
+    private final VCardParserImpl_V21.VersionSelector mVersionSelector =
+            new VCardParserImpl_V21.VersionSelector() {
+        @Override
+        public VCardParserImpl_V21 select(String version) {
+            final VCardParserImpl_V21 parserImpl = getParserImpl(version.trim());
+            if (parserImpl != null) {
+                mCurrentParserImpl = parserImpl;
+            }
+            return parserImpl;
+        }
+    };
+
+    public VCardParser_Auto() {
+        this(VCardConfig.VCARD_TYPE_DEFAULT);
+    }
+
+    public VCardParser_Auto(int vcardType) {
+        mParserImpl21 = new VCardParserImpl_V21(vcardType);
+        mParserImpl30 = new VCardParserImpl_V30(vcardType);
+        mParserImpl40 = new VCardParserImpl_V40(vcardType);
+        if (VCardConfig.isVersion40(vcardType)) {
+            mDefaultParserImpl = mParserImpl40;
+        } else if (VCardConfig.isVersion30(vcardType)) {
+            mDefaultParserImpl = mParserImpl30;
+        } else {
+            mDefaultParserImpl = mParserImpl21;
+        }
+        mParserImpl21.setVersionSelector(mVersionSelector);
+        mParserImpl30.setVersionSelector(mVersionSelector);
+        mParserImpl40.setVersionSelector(mVersionSelector);
+        mCurrentParserImpl = mDefaultParserImpl;
+    }
+
+    private VCardParserImpl_V21 getParserImpl(String version) {
+        if (VCardConstants.VERSION_V21.equals(version)) {
+            return mParserImpl21;
+        } else if (VCardConstants.VERSION_V30.equals(version)) {
+            return mParserImpl30;
+        } else if (VCardConstants.VERSION_V40.equals(version)) {
+            return mParserImpl40;
+        }
+        return null;
+    }
+
+    @Override
+    public void addInterpreter(VCardInterpreter interpreter) {
+        mInterpreterList.add(interpreter);
+        mParserImpl21.addInterpreter(interpreter);
+        mParserImpl30.addInterpreter(interpreter);
+        mParserImpl40.addInterpreter(interpreter);
+    }
+
+    @Override
+    public void setBinarySink(VCardBinarySink sink) {
+        mParserImpl21.setBinarySink(sink);
+        mParserImpl30.setBinarySink(sink);
+        mParserImpl40.setBinarySink(sink);
+    }
+
+    @Override
+    public void setReuseProperties(boolean reuseProperties) {
+        mParserImpl21.setReuseProperties(reuseProperties);
+        mParserImpl30.setReuseProperties(reuseProperties);
+        mParserImpl40.setReuseProperties(reuseProperties);
+    }
+
+    @Override
+    public void setMetrics(VCardParserMetrics metrics) {
+        mParserImpl21.setMetrics(metrics);
+        mParserImpl30.setMetrics(metrics);
+        mParserImpl40.setMetrics(metrics);
+    }
+
+    @Override
+    public void setProgressListener(VCardProgressListener listener) {
+        mParserImpl21.setProgressListener(listener);
+        mParserImpl30.setProgressListener(listener);
+        mParserImpl40.setProgressListener(listener);
+    }
+
+    @Override
+    public void setPropertyFilter(VCardPropertyFilter filter) {
+        mParserImpl21.setPropertyFilter(filter);
+        mParserImpl30.setPropertyFilter(filter);
+        mParserImpl40.setPropertyFilter(filter);
+    }
+
+    @Override
+    public void setLimits(VCardParseLimits limits) {
+        mParserImpl21.setLimits(limits);
+        mParserImpl30.setLimits(limits);
+        mParserImpl40.setLimits(limits);
+    }
+
+    @Override
+    public void setErrorListener(VCardErrorListener listener) {
+        mParserImpl21.setErrorListener(listener);
+        mParserImpl30.setErrorListener(listener);
+        mParserImpl40.setErrorListener(listener);
+    }
+
+    @Override
+    public void parse(InputStream is) throws IOException, VCardException {
+        if (is == null) {
+            throw new NullPointerException("InputStream must not be null.");
+        }
+        parse(new VCardParserImpl_V21.CustomBufferedReader(is), false);
+    }
+
+    @Override
+    public void parse(ByteBuffer buffer) throws IOException, VCardException {
+        if (buffer == null) {
+            throw new NullPointerException("ByteBuffer must not be null.");
+        }
+        parse(new VCardParserImpl_V21.CustomBufferedReader(buffer), false);
+    }
+
+    @Override
+    public void parse(FileChannel channel) throws IOException, VCardException {
+        if (channel == null) {
+            throw new NullPointerException("FileChannel must not be null.");
+        }
+        parse(new VCardParserImpl_V21.CustomBufferedReader(channel), false);
+    }
+
+    @Override
+    public void parseOne(InputStream is) throws IOException, VCardException {
+        if (is == null) {
+            throw new NullPointerException("InputStream must not be null.");
+        }
+        parse(new VCardParserImpl_V21.CustomBufferedReader(is), true);
+    }
+
+    private void parse(VCardParserImpl_V21.CustomBufferedReader reader, boolean onlyOne)
+            throws IOException, VCardException {
+        mDefaultParserImpl.setReader(reader);
+        mCurrentParserImpl = mDefaultParserImpl;
+
+        for (VCardInterpreter interpreter : mInterpreterList) {
+            interpreter.onVCardStarted();
+        }
+        try {
+            try {
+                while (true) {
+                    // Each entry starts with the default version.
+                    if (mCurrentParserImpl.getNestDepth() == 0
+                            && mCurrentParserImpl != mDefaultParserImpl) {
+                        mDefaultParserImpl.takeOver(mCurrentParserImpl);
+                        mCurrentParserImpl = mDefaultParserImpl;
+                    }
+                    if (!mCurrentParserImpl.parseNext()) {
+                        break;
+                    }
+                    if (onlyOne && mCurrentParserImpl.getNestDepth() == 0) {
+                        break;
+                    }
+                }
+            } catch (VCardCanceledException e) {
+                Log.i(LOG_TAG, e.getMessage() + ". exitting parse operation.");
+                mCurrentParserImpl.endOpenEntries();
+            }
+            mCurrentParserImpl.reportInput();
+            for (VCardInterpreter interpreter : mInterpreterList) {
+                interpreter.onVCardEnded();
+            }
+        } finally {
+            mParserImpl21.releaseSpilledValues();
+            mParserImpl30.releaseSpilledValues();
+            mParserImpl40.releaseSpilledValues();
+        }
+    }
+
+    @Override
+    public void cancel() {
+        mParserImpl21.cancel();
+        mParserImpl30.cancel();
+        mParserImpl40.cancel();
+    }
+}
@@ -19,6 +19,8 @@ import com.android.vcard.exception.VCardException;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.HashSet;
@@ -82,11 +84,56 @@ public class VCardParser_V30 extends VCardParser {
         mVCardParserImpl.addInterpreter(interpreter);
     }
 
+    @Override
+    public void setBinarySink(VCardBinarySink sink) {
+        mVCardParserImpl.setBinarySink(sink);
+    }
+
+    @Override
+    public void setReuseProperties(boolean reuseProperties) {
+        mVCardParserImpl.setReuseProperties(reuseProperties);
+    }
+
+    @Override
+    public void setMetrics(VCardParserMetrics metrics) {
+        mVCardParserImpl.setMetrics(metrics);
+    }
+
+    @Override
+    public void setProgressListener(VCardProgressListener listener) {
+        mVCardParserImpl.setProgressListener(listener);
+    }
+
+    @Override
+    public void setPropertyFilter(VCardPropertyFilter filter) {
+        mVCardParserImpl.setPropertyFilter(filter);
+    }
+
+    @Override
+    public void setLimits(VCardParseLimits limits) {
+        mVCardParserImpl.setLimits(limits);
+    }
+
+    @Override
+    public void setErrorListener(VCardErrorListener listener) {
+        mVCardParserImpl.setErrorListener(listener);
+    }
+
     @Override
     public void parse(InputStream is) throws IOException, VCardException {
         mVCardParserImpl.parse(is);
     }
 
+    @Override
+    public void parse(ByteBuffer buffer) throws IOException, VCardException {
+        mVCardParserImpl.parse(buffer);
+    }
+
+    @Override
+    public void parse(FileChannel channel) throws IOException, VCardException {
+        mVCardParserImpl.parse(channel);
+    }
+
     @Override
     public void parseOne(InputStream is) throws IOException, VCardException {
         mVCardParserImpl.parseOne(is);
@@ -0,0 +1,167 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import com.android.vcard.VCardUtils.PhoneNumberUtilsPort;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * <p>
+ * Bounded cache of the results of {@link PhoneNumberUtilsPort#formatNumber(String, int)},
+ * keyed by the number and the formatting type.
+ * </p>
+ * <p>
+ * {@link VCardEntry} (import) and {@link VCardBuilder} (export) format phone numbers via
+ * {@link #getInstance()}, so that numbers repeated across entries (e.g. the main number of
+ * a company in a directory) are formatted once. The cache is split into stripes, each of
+ * which is locked separately and drops its least recently used numbers when full, so that
+ * importers and exporters running in different threads rarely wait for each other.
+ * </p>
+ */
+public class VCardPhoneNumberFormatCache {
+    public static final int DEFAULT_CAPACITY = 1024;
+
+    private static final int STRIPE_COUNT = 16;
+
+    private static final VCardPhoneNumberFormatCache sInstance =
+            new VCardPhoneNumberFormatCache(DEFAULT_CAPACITY);
+
+    private static final class Key {
+        private final String mNumber;
+        private final int mFormattingType;
+        private final int mHashCode;
+
+        public Key(String number, int formattingType) {
+            mNumber = number;
+            mFormattingType = formattingType;
+            mHashCode = number.hashCode() * 31 + formattingType;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            final Key key = (Key) obj;
+            return mFormattingType == key.mFormattingType && mNumber.equals(key.mNumber);
+        }
+
+        @Override
+        public int hashCode() {
+            return mHashCode;
+        }
+    }
+
+    private static final class Stripe extends LinkedHashMap<Key, String> {
+        private final int mCapacity;
+
+        public Stripe(int capacity) {
+            super(16, 0.75f, true);
+            mCapacity = capacity;
+        }
+
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Key, String> eldest) {
+            return size() > mCapacity;
+        }
+    }
+
+    private final Stripe[] mStripes = new Stripe[STRIPE_COUNT];
+    private final AtomicLong mHitCount = new AtomicLong();
+    private final AtomicLong mMissCount = new AtomicLong();
+
+    /**
+     * @param capacity The maximum number of formatted numbers kept. Rounded up to a multiple
+     * of the number of stripes.
+     */
+    public VCardPhoneNumberFormatCache(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        final int stripeCapacity = (capacity + STRIPE_COUNT - 1) / STRIPE_COUNT;
+        for (int i = 0; i < STRIPE_COUNT; i++) {
+            mStripes[i] = new Stripe(stripeCapacity);
+        }
+    }
+
+    /**
+     * @return The cache shared by import and export in this process.
+     */
+    public static VCardPhoneNumberFormatCache getInstance() {
+        return sInstance;
+    }
+
+    /**
+     * Equivalent to {@link PhoneNumberUtilsPort#formatNumber(String, int)}, returning the
+     * cached result when the same number has been formatted with the same type before.
+     */
+    public String formatNumber(String number, int formattingType) {
+        final Key key = new Key(number, formattingType);
+        final Stripe stripe = getStripe(key);
+        synchronized (stripe) {
+            final String formatted = stripe.get(key);
+            if (formatted != null) {
+                mHitCount.incrementAndGet();
+                return formatted;
+            }
+        }
+        mMissCount.incrementAndGet();
+        // Formatted outside the lock. Two threads may format the same number at once, which
+        // only costs the time of one formatting.
+        final String formatted = PhoneNumberUtilsPort.formatNumber(number, formattingType);
+        synchronized (stripe) {
+            stripe.put(key, formatted);
+        }
+        return formatted;
+    }
+
+    private Stripe getStripe(Key key) {
+        final int hash = key.mHashCode ^ (key.mHashCode >>> 16);
+        return mStripes[hash & (STRIPE_COUNT - 1)];
+    }
+
+    /**
+     * @return The number of calls of {@link #formatNumber(String, int)} answered from
+     * the cache.
+     */
+    public long getHitCount() {
+        return mHitCount.get();
+    }
+
+    /**
+     * @return The number of calls of {@link #formatNumber(String, int)} which formatted
+     * the number.
+     */
+    public long getMissCount() {
+        return mMissCount.get();
+    }
+
+    /**
+     * Drops all the cached numbers and resets the counters.
+     */
+    public void clear() {
+        for (Stripe stripe : mStripes) {
+            synchronized (stripe) {
+                stripe.clear();
+            }
+        }
+        mHitCount.set(0);
+        mMissCount.set(0);
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+/**
+ * <p>
+ * Receives how far a parser has read its input, via
+ * {@link VCardParser#setProgressListener(VCardProgressListener)}.
+ * </p>
+ * <p>
+ * Called in the parsing thread roughly every {@link #DEFAULT_INTERVAL} bytes, including
+ * inside long values (e.g. PHOTO), and once at the end of input.
+ * </p>
+ */
+public interface VCardProgressListener {
+    public static final int DEFAULT_INTERVAL = 64 * 1024;
+
+    /**
+     * @param bytesRead The number of bytes consumed from the input so far.
+     * @param totalBytes The size of the input, or -1 when unknown (e.g. an InputStream).
+     */
+    void onProgress(long bytesRead, long totalBytes);
+}
@@ -17,13 +17,17 @@ package com.android.vcard;
 
 import android.util.Log;
 
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
-import java.util.HashMap;
-import java.util.HashSet;
+import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 /**
  * Represents vCard's property, or logical "one line" of each vCard entry.
@@ -59,15 +63,116 @@ import java.util.Map;
  */
 public class VCardProperty {
     private static final String LOG_TAG = VCardConstants.LOG_TAG;
+
+    /**
+     * Translates an encoded value into the value list when it is first needed.
+     * Implemented by parsers, which know the rules of each vCard version.
+     */
+    /* package */ interface ValueDecoder {
+        /**
+         * @param encodedValue The value in {@link VCardConfig#DEFAULT_INTERMEDIATE_CHARSET},
+         * possibly encoded with Quoted-Printable and escaped.
+         * @param targetCharset The charset specified by the CHARSET parameter, or the default.
+         */
+        List<String> decode(String encodedValue, String targetCharset);
+    }
+
     private String mName;
     private List<String> mGroupList;
 
-    private Map<String, Collection<String>> mParameterMap =
-            new HashMap<String, Collection<String>>();
+    /**
+     * Parameter names and their values in the order the names first appeared, in arrays
+     * allocated with the first parameter. Names known to {@link VCardNameTable} are compared
+     * by their ids, and the other names with equals().
+     */
+    private int mParameterCount;
+    private int[] mParameterIds;
+    private String[] mParameterNames;
+    private Collection<?>[] mParameterValues;
+    private Map<String, Collection<String>> mParameterMap;
+
+    /**
+     * Values of the TYPE parameter with their {@link VCardTypeTable} bits, kept for reuse
+     * while TYPE is not given.
+     */
+    private VCardTypeValues mTypeValues;
+
     private String mRawValue;
 
     private List<String> mValueList;
+
+    /**
+     * When non-null, {@link #mValueList} is not decoded yet and will be decoded from
+     * {@link #mEncodedValue} by this decoder.
+     */
+    private ValueDecoder mValueDecoder;
+    private String mEncodedValue;
+    private String mTargetCharset;
     private byte[] mByteValue;
+    private VCardBinaryValue mBinaryValue;
+
+    /**
+     * Emptied lists for parameter values, kept by {@link #clear()} for reuse. Only lists
+     * allocated by {@link #addParameter(String, String)} are kept, as the others may belong
+     * to callers.
+     */
+    private List<ValueList> mRecycledValueLists;
+
+    public VCardProperty() {
+    }
+
+    /**
+     * Creates a deep copy of the given property. Useful for interpreters which keep properties
+     * given by a parser reusing property objects.
+     */
+    public VCardProperty(VCardProperty property) {
+        mName = property.mName;
+        if (property.mGroupList != null && !property.mGroupList.isEmpty()) {
+            mGroupList = new ArrayList<String>(property.mGroupList);
+        }
+        for (int i = 0; i < property.mParameterCount; i++) {
+            final Collection<String> values = property.valuesAt(i);
+            if (values == property.mTypeValues) {
+                putParameter(property.mParameterIds[i], property.mParameterNames[i],
+                        obtainTypeValues());
+                mTypeValues.addAll(property.mTypeValues);
+            } else {
+                final List<String> copy = new ValueList();
+                copy.addAll(values);
+                putParameter(property.mParameterIds[i], property.mParameterNames[i], copy);
+            }
+        }
+        mRawValue = property.mRawValue;
+        if (property.mValueList != null) {
+            mValueList = new ArrayList<String>(property.mValueList);
+        }
+        mValueDecoder = property.mValueDecoder;
+        mEncodedValue = property.mEncodedValue;
+        mTargetCharset = property.mTargetCharset;
+        mByteValue = property.mByteValue;
+        mBinaryValue = property.mBinaryValue;
+    }
+
+    /**
+     * Resets this object to the initial state so that it can be reused for another property.
+     * Collections created for parameters by {@link #addParameter(String, String)} are kept and
+     * reused, so they must not be used after this call.
+     */
+    public void clear() {
+        mName = null;
+        if (mGroupList != null) {
+            mGroupList.clear();
+        }
+        recycleValueLists();
+        clearParameters();
+        mRawValue = null;
+        mValueList = null;
+        mValueDecoder = null;
+        mEncodedValue = null;
+        mTargetCharset = null;
+        mByteValue = null;
+        mBinaryValue = null;
+    }
 
     public void setName(String name) {
         if (mName != null) {
@@ -85,41 +190,201 @@ public class VCardProperty {
     }
 
     public void setParameter(final String paramName, final String paramValue) {
-        mParameterMap.clear();
+        clearParameters();
         addParameter(paramName, paramValue);
     }
 
     public void addParameter(final String paramName, final String paramValue) {
-        Collection<String> values;
-        if (!mParameterMap.containsKey(paramName)) {
-            if (paramName.equals("TYPE")) {
-                values = new HashSet<String>();
-            } else {
-                values = new ArrayList<String>();
-            }
-            mParameterMap.put(paramName, values);
+        final int id = VCardNameTable.getParameterId(paramName);
+        if (id == VCardNameTable.PARAM_ID_TYPE) {
+            addType(paramValue, paramValue != null ? VCardTypeTable.lookup(paramValue) : 0);
+            return;
+        }
+        final int index = indexOfParameter(id, paramName);
+        if (index < 0) {
+            final List<String> values = (mRecycledValueLists != null
+                    && !mRecycledValueLists.isEmpty()
+                    ? mRecycledValueLists.remove(mRecycledValueLists.size() - 1)
+                    : new ValueList());
+            values.add(paramValue);
+            putParameter(id, paramName, values);
         } else {
-            values = mParameterMap.get(paramName);
+            valuesAt(index).add(paramValue);
+        }
+    }
+
+    /**
+     * Adds a value of TYPE with the {@link VCardTypeTable} bit the caller has already found.
+     */
+    /* package */ void addType(String type, int bit) {
+        if (indexOfParameter(VCardNameTable.PARAM_ID_TYPE, null) < 0) {
+            putParameter(VCardNameTable.PARAM_ID_TYPE, VCardConstants.PARAM_TYPE,
+                    obtainTypeValues());
+        }
+        mTypeValues.add(type, bit);
+    }
+
+    /**
+     * @return The values of TYPE with their bits, or null when TYPE is not given.
+     */
+    /* package */ VCardTypeValues getTypeValues() {
+        return (indexOfParameter(VCardNameTable.PARAM_ID_TYPE, null) >= 0 ? mTypeValues : null);
+    }
+
+    private VCardTypeValues obtainTypeValues() {
+        if (mTypeValues == null) {
+            mTypeValues = new VCardTypeValues();
+        }
+        return mTypeValues;
+    }
+
+    private void putParameter(int id, String paramName, Collection<String> values) {
+        if (mParameterNames == null) {
+            mParameterIds = new int[4];
+            mParameterNames = new String[4];
+            mParameterValues = new Collection<?>[4];
+        } else if (mParameterCount == mParameterNames.length) {
+            mParameterIds = Arrays.copyOf(mParameterIds, mParameterCount * 2);
+            mParameterNames = Arrays.copyOf(mParameterNames, mParameterCount * 2);
+            mParameterValues = Arrays.copyOf(mParameterValues, mParameterCount * 2);
+        }
+        mParameterIds[mParameterCount] = id;
+        mParameterNames[mParameterCount] = paramName;
+        mParameterValues[mParameterCount] = values;
+        mParameterCount++;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Collection<String> valuesAt(int index) {
+        return (Collection<String>) mParameterValues[index];
+    }
+
+    private int indexOfParameter(Object paramName) {
+        if (!(paramName instanceof String)) {
+            return -1;
+        }
+        return indexOfParameter(
+                VCardNameTable.getParameterId((String) paramName), (String) paramName);
+    }
+
+    /**
+     * @param paramName Compared only when the id is {@link VCardNameTable#PARAM_ID_UNKNOWN}.
+     */
+    private int indexOfParameter(int id, String paramName) {
+        for (int i = 0; i < mParameterCount; i++) {
+            if (mParameterIds[i] == id
+                    && (id != VCardNameTable.PARAM_ID_UNKNOWN
+                            || mParameterNames[i].equals(paramName))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Stores the values of a parameter given via {@link #getParameterMap()}. Values of TYPE
+     * are copied, as they are kept with their bits in {@link #mTypeValues}.
+     * @return The previous values, or null.
+     */
+    private Collection<String> replaceParameter(String paramName, Collection<String> values) {
+        final int id = VCardNameTable.getParameterId(paramName);
+        final int index = indexOfParameter(id, paramName);
+        if (id == VCardNameTable.PARAM_ID_TYPE) {
+            final Collection<String> previous =
+                    (index >= 0 ? new ArrayList<String>(mTypeValues) : null);
+            if (index < 0) {
+                putParameter(id, paramName, obtainTypeValues());
+            }
+            mTypeValues.clear();
+            for (String type : values) {
+                mTypeValues.add(type);
+            }
+            return previous;
+        } else if (index >= 0) {
+            final Collection<String> previous = valuesAt(index);
+            mParameterValues[index] = values;
+            return previous;
+        }
+        putParameter(id, paramName, values);
+        return null;
+    }
+
+    private void removeParameter(int index) {
+        if (mParameterValues[index] == mTypeValues) {
+            mTypeValues.clear();
+        }
+        final int moved = mParameterCount - index - 1;
+        System.arraycopy(mParameterIds, index + 1, mParameterIds, index, moved);
+        System.arraycopy(mParameterNames, index + 1, mParameterNames, index, moved);
+        System.arraycopy(mParameterValues, index + 1, mParameterValues, index, moved);
+        mParameterCount--;
+        mParameterNames[mParameterCount] = null;
+        mParameterValues[mParameterCount] = null;
+    }
+
+    /**
+     * Empties the lists allocated by {@link #addParameter(String, String)} and keeps them for
+     * reuse. Collections given by callers are left as they are.
+     */
+    private void recycleValueLists() {
+        for (int i = 0; i < mParameterCount; i++) {
+            final Collection<?> values = mParameterValues[i];
+            if (values instanceof ValueList) {
+                values.clear();
+                if (mRecycledValueLists == null) {
+                    mRecycledValueLists = new ArrayList<ValueList>();
+                }
+                mRecycledValueLists.add((ValueList) values);
+            }
+        }
+    }
+
+    /**
+     * Removes all the parameters without modifying their collections, which callers may
+     * still hold.
+     */
+    private void clearParameters() {
+        if (mParameterCount > 0) {
+            Arrays.fill(mParameterNames, 0, mParameterCount, null);
+            Arrays.fill(mParameterValues, 0, mParameterCount, null);
+            mParameterCount = 0;
+        }
+        if (mTypeValues != null) {
+            mTypeValues.clear();
         }
-        values.add(paramValue);
     }
 
     public void setRawValue(String rawValue) {
         mRawValue = rawValue;
     }
 
-    // TODO: would be much better to have translateRawValue() functionality instead of forcing
-    // VCardParserImpl does this job.
+    /**
+     * Lets the value list be decoded from encodedValue on the first call of
+     * {@link #getValueList()}, so that interpreters ignoring the value do not pay for
+     * Quoted-Printable decoding, charset conversion, unescaping, and splitting.
+     */
+    /* package */ void setEncodedValue(
+            ValueDecoder decoder, String encodedValue, String targetCharset) {
+        mValueList = null;
+        mValueDecoder = decoder;
+        mEncodedValue = encodedValue;
+        mTargetCharset = targetCharset;
+    }
 
     public void setValues(String... propertyValues) {
+        mValueDecoder = null;
+        mEncodedValue = null;
         mValueList = Arrays.asList(propertyValues);
     }
 
     public void setValues(List<String> propertyValueList) {
+        mValueDecoder = null;
+        mEncodedValue = null;
         mValueList = propertyValueList;
     }
 
     public void addValues(String... propertyValues) {
+        decodeValueIfNeeded();
         if (mValueList == null) {
             mValueList = Arrays.asList(propertyValues);
         } else {
@@ -128,6 +393,7 @@ public class VCardProperty {
     }
 
     public void addValues(List<String> propertyValueList) {
+        decodeValueIfNeeded();
         if (mValueList == null) {
             mValueList = new ArrayList<String>(propertyValueList);
         } else {
@@ -139,20 +405,47 @@ public class VCardProperty {
         mByteValue = byteValue;
     }
 
+    /**
+     * Sets a handle for the binary value decoded into a {@link VCardBinarySink}.
+     */
+    public void setBinaryValue(VCardBinaryValue binaryValue) {
+        mBinaryValue = binaryValue;
+    }
+
+    /**
+     * @return The name of this property. Parsers give names known to this library (e.g. "TEL")
+     * as the upper-case constants in {@link VCardConstants} whatever their case in the input,
+     * so "tel" is handled as "TEL" (e.g. imported by {@link VCardEntry}). Other names are kept
+     * as they appear. Parameter names are always given in upper case.
+     */
     public String getName() {
         return mName;
     }
 
     public List<String> getGroupList() {
-        return mGroupList;
+        return (mGroupList != null && !mGroupList.isEmpty() ? mGroupList : null);
     }
 
+    /**
+     * @return The parameters in the order their names first appeared. The map and the
+     * collections in it are backed by this property, so changes to one are reflected in
+     * the other.
+     */
     public Map<String, Collection<String>> getParameterMap() {
+        if (mParameterMap == null) {
+            mParameterMap = new ParameterMap();
+        }
         return mParameterMap;
     }
 
+    /**
+     * @return The values of the parameter, or null when it is not given. The collection is
+     * backed by this property. Values of TYPE are a set keeping the order they first appeared
+     * in.
+     */
     public Collection<String> getParameters(String type) {
-        return mParameterMap.get(type);
+        final int index = indexOfParameter(type);
+        return (index >= 0 ? valuesAt(index) : null);
     }
 
     public String getRawValue() {
@@ -160,12 +453,143 @@ public class VCardProperty {
     }
 
     public List<String> getValueList() {
+        decodeValueIfNeeded();
         return mValueList;
     }
 
+    /**
+     * @return The binary value. When it has been decoded into a {@link VCardBinarySink}
+     * without byte array, it is loaded at this point. Use {@link #getBinaryValue()} to
+     * avoid loading large values into memory. Null when the value was written to a stream
+     * which cannot be read back (see {@link VCardBinaryValue#forOutputStream}).
+     */
     public byte[] getByteValue() {
+        if (mByteValue == null && mBinaryValue != null && mBinaryValue.isReadable()) {
+            try {
+                mByteValue = mBinaryValue.getBytes();
+            } catch (IOException e) {
+                Log.e(LOG_TAG, "Failed to load binary value: " + e.getMessage());
+            }
+        }
         return mByteValue;
     }
-}
 
+    /**
+     * @return The handle for the decoded binary value, or null if the property has no value
+     * encoded with BASE64.
+     */
+    public VCardBinaryValue getBinaryValue() {
+        return mBinaryValue;
+    }
+
+    private void decodeValueIfNeeded() {
+        if (mValueDecoder != null) {
+            mValueList = mValueDecoder.decode(mEncodedValue, mTargetCharset);
+            mValueDecoder = null;
+            mEncodedValue = null;
+            mTargetCharset = null;
+        }
+    }
+
+    private class ParameterMap extends AbstractMap<String, Collection<String>> {
+        private Set<Map.Entry<String, Collection<String>>> mEntrySet;
+
+        @Override
+        public int size() {
+            return mParameterCount;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return indexOfParameter(key) >= 0;
+        }
+
+        @Override
+        public Collection<String> get(Object key) {
+            final int index = indexOfParameter(key);
+            return (index >= 0 ? valuesAt(index) : null);
+        }
+
+        @Override
+        public Collection<String> put(String key, Collection<String> value) {
+            if (key == null || value == null) {
+                throw new NullPointerException("Parameter name and values must not be null.");
+            }
+            return replaceParameter(key, value);
+        }
 
+        @Override
+        public Collection<String> remove(Object key) {
+            final int index = indexOfParameter(key);
+            if (index < 0) {
+                return null;
+            }
+            final Collection<String> values = valuesAt(index);
+            final Collection<String> previous =
+                    (values == mTypeValues ? new ArrayList<String>(mTypeValues) : values);
+            removeParameter(index);
+            return previous;
+        }
+
+        @Override
+        public Set<Map.Entry<String, Collection<String>>> entrySet() {
+            if (mEntrySet == null) {
+                mEntrySet = new AbstractSet<Map.Entry<String, Collection<String>>>() {
+                    @Override
+                    public int size() {
+                        return mParameterCount;
+                    }
+
+                    @Override
+                    public Iterator<Map.Entry<String, Collection<String>>> iterator() {
+                        return new Iterator<Map.Entry<String, Collection<String>>>() {
+                            private int mIndex;
+                            private boolean mCanRemove;
+
+                            @Override
+                            public boolean hasNext() {
+                                return mIndex < mParameterCount;
+                            }
+
+                            @Override
+                            public Map.Entry<String, Collection<String>> next() {
+                                if (mIndex >= mParameterCount) {
+                                    throw new NoSuchElementException();
+                                }
+                                final String key = mParameterNames[mIndex];
+                                final Collection<String> value = valuesAt(mIndex);
+                                mIndex++;
+                                mCanRemove = true;
+                                return new AbstractMap.SimpleEntry<String, Collection<String>>(
+                                        key, value) {
+                                    @Override
+                                    public Collection<String> setValue(
+                                            Collection<String> newValue) {
+                                        super.setValue(newValue);
+                                        return put(getKey(), newValue);
+                                    }
+                                };
+                            }
+
+                            @Override
+                            public void remove() {
+                                if (!mCanRemove) {
+                                    throw new IllegalStateException();
+                                }
+                                mCanRemove = false;
+                                removeParameter(--mIndex);
+                            }
+                        };
+                    }
+                };
+            }
+            return mEntrySet;
+        }
+    }
+
+    /**
+     * List of parameter values allocated by this object, which can be recycled.
+     */
+    private static final class ValueList extends ArrayList<String> {
+    }
+}
@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+/**
+ * <p>
+ * Chooses the properties a parser passes to {@link VCardInterpreter}, via
+ * {@link VCardParser#setPropertyFilter(VCardPropertyFilter)}.
+ * </p>
+ * <p>
+ * The parser reads past the lines of rejected properties without charset conversion,
+ * Quoted-Printable decoding, or BASE64 decoding, which makes passes needing only a few
+ * properties (e.g. N, FN, and TEL for deduplication) much cheaper on files with photos.
+ * "BEGIN" and "END" are not passed to this object, so entries are always reported.
+ * </p>
+ */
+public interface VCardPropertyFilter {
+    /**
+     * @param propertyName The upper-case property name (e.g. "TEL"), without group.
+     * @return True when the property should be parsed and passed to interpreters.
+     */
+    boolean accept(String propertyName);
+}
@@ -0,0 +1,269 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import com.android.vcard.exception.VCardCanceledException;
+import com.android.vcard.exception.VCardException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.LinkedList;
+
+/**
+ * <p>
+ * Pull-style vCard parser. Callers ask for the next event with {@link #nextEvent()} or
+ * the next property with {@link #nextProperty()}, instead of receiving callbacks in
+ * {@link VCardInterpreter}. The input is read only as far as needed to return each event,
+ * so callers can stop at any point or interleave reads with their own work.
+ * </p>
+ * <p>
+ * This class uses the same parser implementation as {@link VCardParser_V21},
+ * {@link VCardParser_V30}, and {@link VCardParser_V40}, chosen by the vCard type given to
+ * the constructor.
+ * </p>
+ * <code>
+ * VCardReader reader = new VCardReader(is, VCardConfig.VCARD_TYPE_V30_GENERIC);
+ * VCardProperty property;
+ * while ((property = reader.nextProperty()) != null) {
+ *     ...
+ * }
+ * reader.close();
+ * </code>
+ */
+public class VCardReader implements Closeable {
+    /**
+     * "BEGIN:VCARD" of an entry. Nested entries in vCard 2.1 emit this event too.
+     */
+    public static final int EVENT_ENTRY_STARTED = 1;
+
+    /**
+     * "END:VCARD" of an entry.
+     */
+    public static final int EVENT_ENTRY_ENDED = 2;
+
+    /**
+     * A property in an entry, available via {@link #getProperty()}.
+     */
+    public static final int EVENT_PROPERTY = 3;
+
+    /**
+     * No more event is available.
+     */
+    public static final int EVENT_END_OF_INPUT = 4;
+
+    private static final Integer ENTRY_STARTED = EVENT_ENTRY_STARTED;
+    private static final Integer ENTRY_ENDED = EVENT_ENTRY_ENDED;
+
+    /**
+     * Queues events emitted by one step of the parser.
+     */
+    private class EventQueue implements VCardInterpreter {
+        @Override
+        public void onVCardStarted() {
+        }
+
+        @Override
+        public void onVCardEnded() {
+        }
+
+        @Override
+        public void onEntryStarted() {
+            mEvents.add(ENTRY_STARTED);
+        }
+
+        @Override
+        public void onEntryEnded() {
+            mEvents.add(ENTRY_ENDED);
+        }
+
+        @Override
+        public void onPropertyCreated(VCardProperty property) {
+            mEvents.add(property);
+        }
+    }
+
+    private final VCardParserImpl_V21 mParserImpl;
+    private final Closeable mSource;
+    private final LinkedList<Object> mEvents = new LinkedList<Object>();
+
+    private VCardProperty mProperty;
+    private int mDepth;
+    private boolean mEndOfInput;
+
+    public VCardReader(InputStream is, int vcardType) {
+        this(vcardType, new VCardParserImpl_V21.CustomBufferedReader(is), is);
+    }
+
+    /**
+     * Reads bytes between the position and the limit of the buffer.
+     * The position of the buffer is not modified.
+     */
+    public VCardReader(ByteBuffer buffer, int vcardType) {
+        this(vcardType, new VCardParserImpl_V21.CustomBufferedReader(buffer), null);
+    }
+
+    private VCardReader(int vcardType, VCardParserImpl_V21.CustomBufferedReader reader,
+            Closeable source) {
+        if (VCardConfig.isVersion40(vcardType)) {
+            mParserImpl = new VCardParserImpl_V40(vcardType);
+        } else if (VCardConfig.isVersion30(vcardType)) {
+            mParserImpl = new VCardParserImpl_V30(vcardType);
+        } else {
+            mParserImpl = new VCardParserImpl_V21(vcardType);
+        }
+        mParserImpl.addInterpreter(new EventQueue());
+        mParserImpl.setReader(reader);
+        mSource = source;
+    }
+
+    /**
+     * See {@link VCardParser#setBinarySink(VCardBinarySink)}.
+     */
+    public void setBinarySink(VCardBinarySink sink) {
+        mParserImpl.setBinarySink(sink);
+    }
+
+    /**
+     * See {@link VCardParser#setReuseProperties(boolean)}. When true, each property returned
+     * by this object is valid until the next call of {@link #nextEvent()} or
+     * {@link #nextProperty()}.
+     */
+    public void setReuseProperties(boolean reuseProperties) {
+        mParserImpl.setReuseProperties(reuseProperties);
+    }
+
+    /**
+     * See {@link VCardParser#setMetrics(VCardParserMetrics)}.
+     */
+    public void setMetrics(VCardParserMetrics metrics) {
+        mParserImpl.setMetrics(metrics);
+    }
+
+    /**
+     * See {@link VCardParser#setProgressListener(VCardProgressListener)}.
+     */
+    public void setProgressListener(VCardProgressListener listener) {
+        mParserImpl.setProgressListener(listener);
+    }
+
+    /**
+     * See {@link VCardParser#setPropertyFilter(VCardPropertyFilter)}.
+     */
+    public void setPropertyFilter(VCardPropertyFilter filter) {
+        mParserImpl.setPropertyFilter(filter);
+    }
+
+    /**
+     * See {@link VCardParser#setLimits(VCardParseLimits)}.
+     */
+    public void setLimits(VCardParseLimits limits) {
+        mParserImpl.setLimits(limits);
+    }
+
+    /**
+     * See {@link VCardParser#setErrorListener(VCardErrorListener)}.
+     */
+    public void setErrorListener(VCardErrorListener listener) {
+        mParserImpl.setErrorListener(listener);
+    }
+
+    /**
+     * Makes {@link #nextEvent()} throw {@link VCardCanceledException} at the next line of
+     * the input. It is also thrown when the reading thread is interrupted.
+     * May be called from any thread.
+     */
+    public void cancel() {
+        mParserImpl.cancel();
+    }
+
+    /**
+     * Parses the input until the next event is available.
+     *
+     * @return One of {@link #EVENT_ENTRY_STARTED}, {@link #EVENT_ENTRY_ENDED},
+     * {@link #EVENT_PROPERTY}, and {@link #EVENT_END_OF_INPUT}.
+     */
+    public int nextEvent() throws IOException, VCardException {
+        while (mEvents.isEmpty()) {
+            if (mEndOfInput || !mParserImpl.parseNext()) {
+                if (!mEndOfInput) {
+                    mParserImpl.releaseSpilledValues();
+                }
+                mEndOfInput = true;
+                mProperty = null;
+                return EVENT_END_OF_INPUT;
+            }
+        }
+        final Object event = mEvents.removeFirst();
+        if (event instanceof VCardProperty) {
+            mProperty = (VCardProperty) event;
+            return EVENT_PROPERTY;
+        }
+        mProperty = null;
+        if (event == ENTRY_STARTED) {
+            mDepth++;
+        } else {
+            mDepth--;
+        }
+        return (Integer) event;
+    }
+
+    /**
+     * Skips entry events and returns the next property.
+     *
+     * @return The next property, or null at the end of input.
+     */
+    public VCardProperty nextProperty() throws IOException, VCardException {
+        while (true) {
+            final int event = nextEvent();
+            if (event == EVENT_PROPERTY) {
+                return mProperty;
+            } else if (event == EVENT_END_OF_INPUT) {
+                return null;
+            }
+        }
+    }
+
+    /**
+     * @return The property of the last {@link #EVENT_PROPERTY} event, or null when the last
+     * event is another type.
+     */
+    public VCardProperty getProperty() {
+        return mProperty;
+    }
+
+    /**
+     * @return The number of entries which have started but not ended as of the last event.
+     * 0 between top-level entries.
+     */
+    public int getDepth() {
+        return mDepth;
+    }
+
+    /**
+     * Closes the InputStream given to the constructor, if any. Temporary files of binary
+     * values spilled under {@link VCardParseLimits#setSpillThreshold} are deleted, as they are
+     * at the end of input.
+     */
+    @Override
+    public void close() throws IOException {
+        mParserImpl.releaseSpilledValues();
+        if (mSource != null) {
+            mSource.close();
+        }
+    }
+}
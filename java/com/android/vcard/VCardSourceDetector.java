@@ -18,6 +18,12 @@ package com.android.vcard;
 import android.text.TextUtils;
 import android.util.Log;
 
+import com.android.vcard.exception.VCardException;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
@@ -38,6 +44,11 @@ import java.util.Set;
  * This class is usually used for the "first scan", in which we can understand which vCard
  * version is used (and how many entries exist in a file).
  * </p>
+ * <p>
+ * As the signs used here usually appear in the first few entries, {@link #detect(InputStream,
+ * int, int, int)} scans only the beginning of the input, and scans the rest too only when
+ * the result is not reliable enough. {@link #getConfidence()} tells how reliable it is.
+ * </p>
  */
 public class VCardSourceDetector implements VCardInterpreter {
     private static final String LOG_TAG = VCardConstants.LOG_TAG;
@@ -75,9 +86,36 @@ public class VCardSourceDetector implements VCardInterpreter {
     // For Japanese Windows Mobile phones. It's version is supposed to be 6.5.
     private static final int PARSE_TYPE_WINDOWS_MOBILE_V65_JP = 4;
 
+    /**
+     * Neither VERSION nor a sign of the source has been found.
+     */
+    public static final int CONFIDENCE_NONE = 0;
+    /**
+     * Entries have different versions, or a sign of the source has been found without VERSION.
+     */
+    public static final int CONFIDENCE_LOW = 1;
+    /**
+     * All the entries have the same version, without any sign of the source.
+     */
+    public static final int CONFIDENCE_MEDIUM = 2;
+    /**
+     * All the entries have the same version, and a sign of the source has been found.
+     */
+    public static final int CONFIDENCE_HIGH = 3;
+
     private int mParseType = PARSE_TYPE_UNKNOWN;
 
     private int mVersion = -1;  // -1 == unknown
+    private boolean mVersionConflict;
+
+    private int mNestDepth;
+    private int mEntryCount;
+
+    // Set while scanning a sample in detect().
+    private VCardParser mSampleParser;
+    private int mMaxSampleEntries;
+    private int mRequiredConfidence;
+    private boolean mSampled;
 
     // Some mobile phones (like FOMA) tells us the charset of the data.
     private String mSpecifiedCharset;
@@ -92,10 +130,24 @@ public class VCardSourceDetector implements VCardInterpreter {
 
     @Override
     public void onEntryStarted() {
+        mNestDepth++;
     }
 
     @Override
     public void onEntryEnded() {
+        if (mNestDepth > 0) {
+            mNestDepth--;
+        }
+        if (mNestDepth > 0) {
+            return;
+        }
+        mEntryCount++;
+        if (mSampleParser != null && mEntryCount >= mMaxSampleEntries
+                && getConfidence() >= mRequiredConfidence) {
+            mSampled = true;
+            mSampleParser.cancel();
+            mSampleParser = null;
+        }
     }
 
     @Override
@@ -106,14 +158,22 @@ public class VCardSourceDetector implements VCardInterpreter {
         if (propertyName.equalsIgnoreCase(VCardConstants.PROPERTY_VERSION)
                 && valueList.size() > 0) {
             final String versionString = valueList.get(0);
+            final int version;
             if (versionString.equals(VCardConstants.VERSION_V21)) {
-                mVersion = VCardConfig.VERSION_21;
+                version = VCardConfig.VERSION_21;
             } else if (versionString.equals(VCardConstants.VERSION_V30)) {
-                mVersion = VCardConfig.VERSION_30;
+                version = VCardConfig.VERSION_30;
             } else if (versionString.equals(VCardConstants.VERSION_V40)) {
-                mVersion = VCardConfig.VERSION_40;
+                version = VCardConfig.VERSION_40;
             } else {
                 Log.w(LOG_TAG, "Invalid version string: " + versionString);
+                version = -1;
+            }
+            if (version >= 0) {
+                if (mVersion >= 0 && mVersion != version) {
+                    mVersionConflict = true;
+                }
+                mVersion = version;
             }
         } else if (propertyName.equalsIgnoreCase(TYPE_FOMA_CHARSET_SIGN)) {
             mParseType = PARSE_TYPE_DOCOMO_FOMA;
@@ -135,6 +195,168 @@ public class VCardSourceDetector implements VCardInterpreter {
         }
     }
 
+    /**
+     * <p>
+     * Detects the source from at most maxBytes bytes and maxEntries top-level entries at
+     * the beginning of the input. When the confidence for the sample is lower than
+     * requiredConfidence, the rest of the input is scanned too, as the "first scan" would do.
+     * </p>
+     * <p>
+     * The input is read as the sample is parsed, so no more than needed for maxEntries entries
+     * is read (up to the buffer of the parser). The sample is cut at the last line break
+     * within maxBytes, so its last entry may be incomplete. Errors caused by that are ignored.
+     * The InputStream is not closed.
+     * </p>
+     *
+     * @param requiredConfidence One of {@link #CONFIDENCE_NONE}, {@link #CONFIDENCE_LOW},
+     * {@link #CONFIDENCE_MEDIUM}, and {@link #CONFIDENCE_HIGH}.
+     */
+    public static VCardSourceDetector detect(InputStream is, int maxEntries, int maxBytes,
+            int requiredConfidence) throws IOException, VCardException {
+        if (is == null) {
+            throw new NullPointerException("InputStream must not be null.");
+        }
+        if (maxEntries <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException(
+                    "Invalid budget: " + maxEntries + " entries, " + maxBytes + " bytes");
+        }
+        final VCardSourceDetector detector = new VCardSourceDetector();
+        final SampleInputStream sample = new SampleInputStream(is, maxBytes, detector);
+        final VCardParser parser = new VCardParser_Auto();
+        parser.addInterpreter(detector);
+        detector.mSampleParser = parser;
+        detector.mMaxSampleEntries = maxEntries;
+        detector.mRequiredConfidence = requiredConfidence;
+        try {
+            parser.parse(sample);
+        } catch (VCardException e) {
+            if (!sample.mTruncated) {
+                throw e;
+            }
+        }
+        detector.mSampleParser = null;
+        final boolean truncated = sample.mTruncated;
+        if (!truncated || detector.mSampled || detector.getConfidence() >= requiredConfidence) {
+            detector.mSampled = truncated || detector.mSampled;
+            return detector;
+        }
+
+        Log.i(LOG_TAG, "Sample of " + sample.mEnd + " bytes is ambiguous. Scanning all.");
+        final VCardSourceDetector fullDetector = new VCardSourceDetector();
+        final VCardParser fullParser = new VCardParser_Auto();
+        fullParser.addInterpreter(fullDetector);
+        fullParser.parse(new SequenceInputStream(
+                new ByteArrayInputStream(sample.mBuffer, 0, sample.mLength), is));
+        return fullDetector;
+    }
+
+    /**
+     * Reads the sample from the input as the parser needs it, keeping the bytes read so that
+     * they can be scanned again. Once more than maxBytes bytes have been read, the sample ends
+     * at the last line break within maxBytes. Nothing more is read after the sample parser
+     * has been canceled.
+     */
+    private static class SampleInputStream extends InputStream {
+        private static final int CHUNK_SIZE = 8192;
+
+        private final InputStream mIn;
+        private final int mMaxBytes;
+        private final VCardSourceDetector mDetector;
+
+        private byte[] mBuffer = new byte[CHUNK_SIZE];
+        // Bytes read from mIn.
+        private int mLength;
+        // Bytes given to the parser.
+        private int mPosition;
+        // The end of the bytes which may be given to the parser.
+        private int mEnd;
+        private boolean mEndOfSample;
+        private boolean mTruncated;
+
+        public SampleInputStream(InputStream in, int maxBytes, VCardSourceDetector detector) {
+            mIn = in;
+            mMaxBytes = maxBytes;
+            mDetector = detector;
+        }
+
+        @Override
+        public int read() throws IOException {
+            final byte[] b = new byte[1];
+            return (read(b, 0, 1) < 0 ? -1 : b[0] & 0xff);
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            while (mPosition == mEnd) {
+                if (mEndOfSample || mDetector.mSampled) {
+                    return -1;
+                }
+                fill();
+            }
+            final int count = Math.min(len, mEnd - mPosition);
+            System.arraycopy(mBuffer, mPosition, b, off, count);
+            mPosition += count;
+            return count;
+        }
+
+        private void fill() throws IOException {
+            // One more byte than maxBytes tells whether the input continues after the sample.
+            final int request = (int) Math.min(CHUNK_SIZE, (long) mMaxBytes + 1 - mLength);
+            if (mBuffer.length - mLength < request) {
+                mBuffer = Arrays.copyOf(mBuffer,
+                        (int) Math.min(Integer.MAX_VALUE, 2L * mBuffer.length));
+            }
+            final int count = mIn.read(mBuffer, mLength, request);
+            if (count < 0) {
+                mEndOfSample = true;
+                return;
+            }
+            mLength += count;
+            if (mLength <= mMaxBytes) {
+                mEnd = mLength;
+                return;
+            }
+            mEndOfSample = true;
+            mTruncated = true;
+            int end = mMaxBytes;
+            while (end > mPosition && mBuffer[end - 1] != '\n' && mBuffer[end - 1] != '\r') {
+                end--;
+            }
+            mEnd = end;
+        }
+    }
+
+    /**
+     * @return One of {@link #CONFIDENCE_NONE}, {@link #CONFIDENCE_LOW},
+     * {@link #CONFIDENCE_MEDIUM}, and {@link #CONFIDENCE_HIGH}, for the input scanned so far.
+     */
+    public int getConfidence() {
+        if (mVersion < 0) {
+            return (mParseType != PARSE_TYPE_UNKNOWN ? CONFIDENCE_LOW : CONFIDENCE_NONE);
+        } else if (mVersionConflict) {
+            return CONFIDENCE_LOW;
+        }
+        return (mParseType != PARSE_TYPE_UNKNOWN ? CONFIDENCE_HIGH : CONFIDENCE_MEDIUM);
+    }
+
+    /**
+     * @return True when the estimation is based on a part of the input, i.e. the input was
+     * given to {@link #detect(InputStream, int, int, int)} and its sample was reliable enough.
+     */
+    public boolean isSampled() {
+        return mSampled;
+    }
+
+    /**
+     * @return The number of top-level entries scanned.
+     */
+    public int getEntryCount() {
+        return mEntryCount;
+    }
+
     /**
      * @return The available type can be used with vCard parser. You probably need to
      * use {{@link #getEstimatedCharset()} to understand the charset to be used.
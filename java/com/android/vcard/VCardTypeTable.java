@@ -0,0 +1,101 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+/**
+ * <p>
+ * Bits for the values of the TYPE parameter which are resolved into data types, e.g. HOME and
+ * CELL.
+ * </p>
+ * <p>
+ * The bit of each TYPE value is found when the value is added to {@link VCardTypeValues}
+ * (by the parser, in the same pass as finding its canonical instance in
+ * {@link VCardNameTable}). {@link VCardEntry} and {@link VCardUtils#getPhoneTypeFromStrings}
+ * then test the bits of the values in the order they were given, instead of upper-casing and
+ * comparing each value. Values are matched case-insensitively.
+ * </p>
+ * @hide
+ */
+/* package */ final class VCardTypeTable {
+    public static final int PREF = 1;
+    public static final int HOME = 1 << 1;
+    public static final int WORK = 1 << 2;
+    public static final int CELL = 1 << 3;
+    public static final int FAX = 1 << 4;
+    public static final int VOICE = 1 << 5;
+    public static final int PAGER = 1 << 6;
+    public static final int CAR = 1 << 7;
+    public static final int ISDN = 1 << 8;
+    public static final int OTHER = 1 << 9;
+    public static final int CALLBACK = 1 << 10;
+    public static final int COMPANY_MAIN = 1 << 11;
+    public static final int RADIO = 1 << 12;
+    public static final int TTY_TDD = 1 << 13;
+    public static final int ASSISTANT = 1 << 14;
+    public static final int COMPANY = 1 << 15;
+    public static final int PARCEL = 1 << 16;
+    public static final int DOM = 1 << 17;
+    public static final int INTL = 1 << 18;
+
+    /**
+     * Canonical names indexed by the position of each bit. Must be in {@link VCardNameTable}.
+     */
+    private static final String[] sNames = {
+        VCardConstants.PARAM_TYPE_PREF,
+        VCardConstants.PARAM_TYPE_HOME,
+        VCardConstants.PARAM_TYPE_WORK,
+        VCardConstants.PARAM_TYPE_CELL,
+        VCardConstants.PARAM_TYPE_FAX,
+        VCardConstants.PARAM_TYPE_VOICE,
+        VCardConstants.PARAM_TYPE_PAGER,
+        VCardConstants.PARAM_TYPE_CAR,
+        VCardConstants.PARAM_TYPE_ISDN,
+        VCardConstants.PARAM_PHONE_EXTRA_TYPE_OTHER,
+        VCardConstants.PARAM_PHONE_EXTRA_TYPE_CALLBACK,
+        VCardConstants.PARAM_PHONE_EXTRA_TYPE_COMPANY_MAIN,
+        VCardConstants.PARAM_PHONE_EXTRA_TYPE_RADIO,
+        VCardConstants.PARAM_PHONE_EXTRA_TYPE_TTY_TDD,
+        VCardConstants.PARAM_PHONE_EXTRA_TYPE_ASSISTANT,
+        VCardConstants.PARAM_EXTRA_TYPE_COMPANY,
+        VCardConstants.PARAM_ADR_TYPE_PARCEL,
+        VCardConstants.PARAM_ADR_TYPE_DOM,
+        VCardConstants.PARAM_ADR_TYPE_INTL,
+    };
+
+    private VCardTypeTable() {
+    }
+
+    /**
+     * @return The bit for the value, or 0 when the value has no bit.
+     */
+    public static int lookup(String value) {
+        return VCardNameTable.getTypeBit(value);
+    }
+
+    /**
+     * @return The number of bits.
+     */
+    public static int getCount() {
+        return sNames.length;
+    }
+
+    /**
+     * @return The canonical upper-case name for one bit.
+     */
+    public static String getName(int bit) {
+        return sNames[Integer.numberOfTrailingZeros(bit)];
+    }
+}
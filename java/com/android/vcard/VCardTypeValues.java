@@ -0,0 +1,179 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard;
+
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * <p>
+ * Values of the TYPE parameter of {@link VCardProperty} in the order they first appeared,
+ * without duplicates.
+ * </p>
+ * <p>
+ * The {@link VCardTypeTable} bit of each value is kept next to it, found when the value is
+ * added (parsers give the bit they found with the canonical instance), so that interpreters
+ * resolve types by testing {@link #getBit(int)} in order. Values with no bit are kept as
+ * given.
+ * </p>
+ * @hide
+ */
+/* package */ final class VCardTypeValues extends AbstractSet<String> {
+    private String[] mValues = new String[4];
+    private int[] mBits = new int[4];
+    private int mCount;
+
+    public VCardTypeValues() {
+    }
+
+    /**
+     * @return Values for resolving the given collection in its iteration order. Unlike
+     * {@link #add(String)}, duplicates are kept so that the result is resolved like the
+     * collection itself. Null values are skipped.
+     */
+    public static VCardTypeValues of(Collection<String> values) {
+        if (values instanceof VCardTypeValues) {
+            return (VCardTypeValues) values;
+        }
+        final VCardTypeValues typeValues = new VCardTypeValues();
+        for (String value : values) {
+            if (value != null) {
+                typeValues.append(value, VCardTypeTable.lookup(value));
+            }
+        }
+        return typeValues;
+    }
+
+    @Override
+    public int size() {
+        return mCount;
+    }
+
+    public String get(int index) {
+        return mValues[index];
+    }
+
+    /**
+     * @return The {@link VCardTypeTable} bit of the value at the index, or 0.
+     */
+    public int getBit(int index) {
+        return mBits[index];
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        if (o == null) {
+            return indexOf(null, 0) >= 0;
+        }
+        return (o instanceof String && indexOf((String) o, VCardTypeTable.lookup((String) o)) >= 0);
+    }
+
+    @Override
+    public boolean add(String value) {
+        if (value == null) {
+            throw new NullPointerException("TYPE value must not be null.");
+        }
+        return add(value, VCardTypeTable.lookup(value));
+    }
+
+    /**
+     * Adds the value with the bit already found for it.
+     */
+    public boolean add(String value, int bit) {
+        if (indexOf(value, bit) >= 0) {
+            return false;
+        }
+        append(value, bit);
+        return true;
+    }
+
+    /**
+     * Adds all the values of the other object, keeping their bits.
+     */
+    public void addAll(VCardTypeValues values) {
+        for (int i = 0; i < values.mCount; i++) {
+            add(values.mValues[i], values.mBits[i]);
+        }
+    }
+
+    @Override
+    public void clear() {
+        Arrays.fill(mValues, 0, mCount, null);
+        mCount = 0;
+    }
+
+    @Override
+    public Iterator<String> iterator() {
+        return new Iterator<String>() {
+            private int mIndex;
+            private boolean mCanRemove;
+
+            @Override
+            public boolean hasNext() {
+                return mIndex < mCount;
+            }
+
+            @Override
+            public String next() {
+                if (mIndex >= mCount) {
+                    throw new NoSuchElementException();
+                }
+                mCanRemove = true;
+                return mValues[mIndex++];
+            }
+
+            @Override
+            public void remove() {
+                if (!mCanRemove) {
+                    throw new IllegalStateException();
+                }
+                mCanRemove = false;
+                removeAt(--mIndex);
+            }
+        };
+    }
+
+    private int indexOf(String value, int bit) {
+        // Equal values have the same bit, so values with other bits are not compared.
+        for (int i = 0; i < mCount; i++) {
+            if (mBits[i] == bit && (mValues[i] == value
+                    || (value != null && value.equals(mValues[i])))) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private void append(String value, int bit) {
+        if (mCount == mValues.length) {
+            mValues = Arrays.copyOf(mValues, mCount * 2);
+            mBits = Arrays.copyOf(mBits, mCount * 2);
+        }
+        mValues[mCount] = value;
+        mBits[mCount] = bit;
+        mCount++;
+    }
+
+    private void removeAt(int index) {
+        final int moved = mCount - index - 1;
+        System.arraycopy(mValues, index + 1, mValues, index, moved);
+        System.arraycopy(mBits, index + 1, mBits, index, moved);
+        mValues[--mCount] = null;
+    }
+}
@@ -26,7 +26,6 @@ import com.android.vcard.exception.VCardException;
 
 import java.io.ByteArrayOutputStream;
 import java.io.UnsupportedEncodingException;
-import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Arrays;
@@ -199,27 +198,37 @@ public class VCardUtils {
         boolean hasPref = false;
 
         if (types != null) {
-            for (final String typeStringOrg : types) {
+            // Known values are compared as bits in VCardTypeTable, without upper-casing.
+            // Values from VCardProperty already have their bits.
+            final VCardTypeValues typeValues = VCardTypeValues.of(types);
+            for (int i = 0; i < typeValues.size(); i++) {
+                final String typeStringOrg = typeValues.get(i);
                 if (typeStringOrg == null) {
                     continue;
                 }
-                final String typeStringUpperCase = typeStringOrg.toUpperCase();
-                if (typeStringUpperCase.equals(VCardConstants.PARAM_TYPE_PREF)) {
+                final int bit = typeValues.getBit(i);
+                if (bit == VCardTypeTable.PREF) {
                     hasPref = true;
-                } else if (typeStringUpperCase.equals(VCardConstants.PARAM_TYPE_FAX)) {
+                } else if (bit == VCardTypeTable.FAX) {
                     isFax = true;
                 } else {
                     final String labelCandidate;
-                    if (typeStringUpperCase.startsWith("X-") && type < 0) {
-                        labelCandidate = typeStringOrg.substring(2);
-                    } else {
+                    final Integer tmp;
+                    if (bit != 0) {
                         labelCandidate = typeStringOrg;
+                        tmp = sKnownPhoneTypeMap_StoI.get(VCardTypeTable.getName(bit));
+                    } else {
+                        if (typeStringOrg.toUpperCase().startsWith("X-") && type < 0) {
+                            labelCandidate = typeStringOrg.substring(2);
+                        } else {
+                            labelCandidate = typeStringOrg;
+                        }
+                        if (labelCandidate.length() == 0) {
+                            continue;
+                        }
+                        // e.g. "X-HOME" -> TYPE_HOME
+                        tmp = sKnownPhoneTypeMap_StoI.get(labelCandidate.toUpperCase());
                     }
-                    if (labelCandidate.length() == 0) {
-                        continue;
-                    }
-                    // e.g. "home" -> TYPE_HOME
-                    final Integer tmp = sKnownPhoneTypeMap_StoI.get(labelCandidate.toUpperCase());
                     if (tmp != null) {
                         final int typeCandidate = tmp;
                         // 1. If a type isn't specified yet, we'll choose the new type candidate.
@@ -373,43 +382,65 @@ public class VCardUtils {
      */
     public static List<String> constructListFromValue(final String value,
             final int vcardType) {
+        final boolean isVersion21 =
+                !VCardConfig.isVersion40(vcardType) && !VCardConfig.isVersion30(vcardType);
         final List<String> list = new ArrayList<String>();
-        StringBuilder builder = new StringBuilder();
         final int length = value.length();
+        // Components without escaped chars are substrings of the value. The builder is used
+        // only for the others.
+        StringBuilder builder = null;
+        int start = 0;  // The beginning of the part not appended to the builder yet.
         for (int i = 0; i < length; i++) {
-            char ch = value.charAt(i);
+            final char ch = value.charAt(i);
             if (ch == '\\' && i < length - 1) {
-                char nextCh = value.charAt(i + 1);
-                final String unescapedString;
-                if (VCardConfig.isVersion40(vcardType)) {
-                    unescapedString = VCardParserImpl_V40.unescapeCharacter(nextCh);
-                } else if (VCardConfig.isVersion30(vcardType)) {
-                    unescapedString = VCardParserImpl_V30.unescapeCharacter(nextCh);
-                } else {
-                    if (!VCardConfig.isVersion21(vcardType)) {
-                        // Unknown vCard type
-                        Log.w(LOG_TAG, "Unknown vCard type");
+                final int unescapedChar = unescapeCharacter(value.charAt(i + 1), isVersion21);
+                if (unescapedChar >= 0) {
+                    if (builder == null) {
+                        if (isVersion21 && !VCardConfig.isVersion21(vcardType)) {
+                            // Unknown vCard type
+                            Log.w(LOG_TAG, "Unknown vCard type");
+                        }
+                        builder = new StringBuilder(length);
                     }
-                    unescapedString = VCardParserImpl_V21.unescapeCharacter(nextCh);
-                }
-
-                if (unescapedString != null) {
-                    builder.append(unescapedString);
+                    builder.append(value, start, i).append((char) unescapedChar);
                     i++;
-                } else {
-                    builder.append(ch);
+                    start = i + 1;
                 }
             } else if (ch == ';') {
-                list.add(builder.toString());
-                builder = new StringBuilder();
-            } else {
-                builder.append(ch);
+                list.add(takeComponent(value, start, i, builder));
+                start = i + 1;
             }
         }
-        list.add(builder.toString());
+        list.add(takeComponent(value, start, length, builder));
         return list;
     }
 
+    /**
+     * Same as unescapeCharacter() of {@link VCardParserImpl_V21}, {@link VCardParserImpl_V30},
+     * and {@link VCardParserImpl_V40} (the latter two are identical), without creating Strings.
+     *
+     * @return The unescaped char, or -1 when the backslash should be kept as is.
+     */
+    private static int unescapeCharacter(final char ch, final boolean isVersion21) {
+        if (isVersion21) {
+            return (ch == '\\' || ch == ';' || ch == ':' || ch == ',') ? ch : -1;
+        }
+        return (ch == 'n' || ch == 'N') ? '\n' : ch;
+    }
+
+    /**
+     * @return value[start, end) following the content of the builder, which is cleared.
+     */
+    private static String takeComponent(
+            final String value, int start, int end, StringBuilder builder) {
+        if (builder == null || builder.length() == 0) {
+            return value.substring(start, end);
+        }
+        final String component = builder.append(value, start, end).toString();
+        builder.setLength(0);
+        return component;
+    }
+
     public static boolean containsOnlyPrintableAscii(final String...values) {
         if (values == null) {
             return true;
@@ -726,6 +757,15 @@ public class VCardUtils {
     public static String parseQuotedPrintable(
             final String value, boolean strictLineBreaking,
             String sourceCharset, String targetCharset) {
+        if (!strictLineBreaking
+                && VCardConfig.DEFAULT_INTERMEDIATE_CHARSET.equalsIgnoreCase(sourceCharset)) {
+            final String decoded = decodeQuotedPrintableInOnePass(value, targetCharset);
+            if (decoded != null) {
+                return decoded;
+            }
+            // Invalid escape sequence. The code below keeps the value as is.
+        }
+
         // "= " -> " ", "=\t" -> "\t".
         // Previous code had done this replacement. Keep on the safe side.
         final String quotedPrintable;
@@ -816,6 +856,69 @@ public class VCardUtils {
         }
     }
 
+    /**
+     * Equivalent to {@link #parseQuotedPrintable(String, boolean, String, String)} with
+     * non-strict line breaking and ISO-8859-1 as the source charset, for which each char of
+     * the value is one byte. Soft line breaks, line terminators, and escape sequences are
+     * handled in one pass into a single byte array, without intermediate Strings.
+     *
+     * @return null when the value has a sequence which is not a valid escape, which the
+     * caller should handle with the original algorithm.
+     */
+    private static String decodeQuotedPrintableInOnePass(
+            final String value, String targetCharset) {
+        final int length = value.length();
+        final byte[] bytes = new byte[length];
+        int count = 0;
+        for (int i = 0; i < length; i++) {
+            final char ch = value.charAt(i);
+            if (ch == '=') {
+                if (i == length - 1) {
+                    // Soft line break at the end of the value.
+                    break;
+                }
+                final char nextCh = value.charAt(i + 1);
+                if (nextCh == ' ' || nextCh == '\t') {
+                    bytes[count++] = (byte) nextCh;
+                    i++;
+                } else if (nextCh == '\r' || nextCh == '\n') {
+                    // Soft line break. The line terminator is dropped below.
+                } else if (i < length - 2) {
+                    final int u = hexDigit(nextCh);
+                    final int l = hexDigit(value.charAt(i + 2));
+                    if (u < 0 || l < 0) {
+                        return null;
+                    }
+                    bytes[count++] = (byte) ((u << 4) + l);
+                    i += 2;
+                } else {
+                    return null;
+                }
+            } else if (ch == '\r' || ch == '\n') {
+                continue;
+            } else if (ch > 0xFF) {
+                // Not a byte. Let String#getBytes() handle it.
+                return null;
+            } else {
+                bytes[count++] = (byte) ch;
+            }
+        }
+
+        if (count == 0) {
+            Log.w(LOG_TAG, "Given raw string is empty.");
+        }
+        try {
+            return new String(bytes, 0, count, targetCharset);
+        } catch (UnsupportedEncodingException e) {
+            Log.e(LOG_TAG, "Failed to encode: charset=" + targetCharset);
+            return new String(bytes, 0, count);
+        }
+    }
+
+    private static int hexDigit(char ch) {
+        return ch < 0x80 ? Character.digit(ch, 16) : -1;
+    }
+
     public static final VCardParser getAppropriateParser(int vcardType)
             throws VCardException {
         if (VCardConfig.isVersion21(vcardType)) {
@@ -834,12 +937,19 @@ public class VCardUtils {
         if (sourceCharset.equalsIgnoreCase(targetCharset)) {
             return originalString;
         }
-        final Charset charset = Charset.forName(sourceCharset);
-        final ByteBuffer byteBuffer = charset.encode(originalString);
-        // byteBuffer.array() "may" return byte array which is larger than
-        // byteBuffer.remaining(). Here, we keep on the safe side.
-        final byte[] bytes = new byte[byteBuffer.remaining()];
-        byteBuffer.get(bytes);
+        // Most of values in vCard are ASCII, which are same in both charsets.
+        if (isAsciiCompatibleCharset(sourceCharset) && isAsciiCompatibleCharset(targetCharset)
+                && containsOnlyAscii(originalString)) {
+            return originalString;
+        }
+        final byte[] bytes;
+        if (VCardConfig.DEFAULT_INTERMEDIATE_CHARSET.equalsIgnoreCase(sourceCharset)) {
+            // Parsers read values in this charset, so each char is one byte of the input,
+            // which is taken back without going through the encoder.
+            bytes = getIntermediateBytes(originalString);
+        } else {
+            bytes = originalString.getBytes(Charset.forName(sourceCharset));
+        }
         try {
             return new String(bytes, targetCharset);
         } catch (UnsupportedEncodingException e) {
@@ -848,6 +958,36 @@ public class VCardUtils {
         }
     }
 
+    /**
+     * Same as getBytes() with {@link VCardConfig#DEFAULT_INTERMEDIATE_CHARSET}, where chars not
+     * in the charset become '?'.
+     */
+    private static byte[] getIntermediateBytes(final String str) {
+        final int length = str.length();
+        final byte[] bytes = new byte[length];
+        for (int i = 0; i < length; i++) {
+            final char ch = str.charAt(i);
+            bytes[i] = (ch <= 0xFF ? (byte) ch : (byte) '?');
+        }
+        return bytes;
+    }
+
+    private static boolean isAsciiCompatibleCharset(final String charset) {
+        return "UTF-8".equalsIgnoreCase(charset)
+                || "US-ASCII".equalsIgnoreCase(charset)
+                || "ISO-8859-1".equalsIgnoreCase(charset);
+    }
+
+    private static boolean containsOnlyAscii(final String str) {
+        final int length = str.length();
+        for (int i = 0; i < length; i++) {
+            if (str.charAt(i) >= 0x80) {
+                return false;
+            }
+        }
+        return true;
+    }
+
     // TODO: utilities for vCard 4.0: datetime, timestamp, integer, float, and boolean
 
     private VCardUtils() {
@@ -0,0 +1,29 @@
+/*
+ * Copyright (C) 2026 The Android Open Source Project
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.android.vcard.exception;
+
+/**
+ * VCardException thrown when parsing is stopped by a cancel request or by an interrupt of
+ * the parsing thread.
+ */
+public class VCardCanceledException extends VCardException {
+    public VCardCanceledException() {
+        super();
+    }
+    public VCardCanceledException(String message) {
+        super(message);
+    }
+}
@@ -15,6 +15,7 @@
  */
 package com.android.vcard.tests;
 
+import com.android.vcard.VCardBinaryValue;
 import com.android.vcard.VCardConfig;
 import com.android.vcard.VCardConstants;
 import com.android.vcard.VCardEntry;
@@ -47,9 +48,15 @@ import android.provider.ContactsContract.CommonDataKinds.Phone;
 import android.provider.ContactsContract.CommonDataKinds.StructuredPostal;
 import android.provider.ContactsContract.CommonDataKinds.SipAddress;
 import android.test.AndroidTestCase;
+import android.util.Pair;
 
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -374,5 +381,257 @@ public class VCardEntryTests extends AndroidTestCase {
         assertEquals(0, operationList.size());
     }
 
+    /**
+     * Tests if types are resolved from TYPE values regardless of their cases, and unknown
+     * values are used as labels of custom types.
+     */
+    public void testTypeResolution() {
+        final VCardEntry entry = new VCardEntry();
+        VCardProperty property = new VCardProperty();
+        property.setName("TEL");
+        property.addParameter("TYPE", "voice");
+        property.addParameter("TYPE", "Work");
+        property.addParameter("TYPE", "PREF");
+        property.addParameter("TYPE", "FAX");
+        property.addParameter("TYPE", "FAX");
+        property.setValues("1");
+        entry.addProperty(property);
+        final Collection<String> typeCollection = property.getParameters("TYPE");
+        assertEquals(4, typeCollection.size());
+        assertTrue(typeCollection.contains("Work"));
+        assertFalse(typeCollection.contains("WORK"));
+        // Values are kept in the order they first appeared.
+        assertEquals(Arrays.asList("voice", "Work", "PREF", "FAX"),
+                new ArrayList<String>(typeCollection));
+        assertEquals(typeCollection, property.getParameterMap().get("TYPE"));
+
+        property = new VCardProperty();
+        property.setName("TEL");
+        property.addParameter("TYPE", "X-Private");
+        property.setValues("2");
+        entry.addProperty(property);
+
+        // The first known type wins.
+        property = new VCardProperty();
+        property.setName("TEL");
+        property.addParameter("TYPE", "HOME");
+        property.addParameter("TYPE", "WORK");
+        property.setValues("3");
+        entry.addProperty(property);
+
+        property = new VCardProperty();
+        property.setName("EMAIL");
+        property.addParameter("TYPE", "INTERNET");
+        property.addParameter("TYPE", "home");
+        property.setValues("email1");
+        entry.addProperty(property);
+
+        property = new VCardProperty();
+        property.setName("EMAIL");
+        property.addParameter("TYPE", "INTERNET");
+        property.setValues("email2");
+        entry.addProperty(property);
+
+        property = new VCardProperty();
+        property.setName("ADR");
+        property.addParameter("TYPE", "PARCEL");
+        property.addParameter("TYPE", "Company");
+        property.setValues(null, null, "street1");
+        entry.addProperty(property);
+
+        property = new VCardProperty();
+        property.setName("ADR");
+        property.addParameter("TYPE", "X-Other");
+        property.setValues(null, null, "street2");
+        entry.addProperty(property);
+
+        final List<PhoneData> phoneList = entry.getPhoneList();
+        assertEquals(3, phoneList.size());
+        assertEquals(Phone.TYPE_FAX_WORK, phoneList.get(0).getType());
+        assertNull(phoneList.get(0).getLabel());
+        assertTrue(phoneList.get(0).isPrimary());
+        assertEquals(Phone.TYPE_CUSTOM, phoneList.get(1).getType());
+        assertEquals("Private", phoneList.get(1).getLabel());
+        assertFalse(phoneList.get(1).isPrimary());
+        assertEquals(Phone.TYPE_HOME, phoneList.get(2).getType());
+
+        final List<EmailData> emailList = entry.getEmailList();
+        assertEquals(2, emailList.size());
+        assertEquals(Email.TYPE_HOME, emailList.get(0).getType());
+        assertEquals(Email.TYPE_CUSTOM, emailList.get(1).getType());
+        assertEquals("INTERNET", emailList.get(1).getLabel());
+
+        final List<PostalData> postalList = entry.getPostalList();
+        assertEquals(2, postalList.size());
+        assertEquals(StructuredPostal.TYPE_WORK, postalList.get(0).getType());
+        assertEquals(StructuredPostal.TYPE_OTHER, postalList.get(1).getType());
+        assertNull(postalList.get(1).getLabel());
+    }
+
+    public void testParameterMapModification() {
+        final VCardProperty property = new VCardProperty();
+        property.setName("TEL");
+        property.addParameter("TYPE", "HOME");
+        property.addParameter("TYPE", "VOICE");
+        property.addParameter("X-PARAM", "a");
+        property.setValues("1");
+
+        final Map<String, Collection<String>> paramMap = property.getParameterMap();
+        paramMap.get("X-PARAM").add("b");
+        assertEquals(Arrays.asList("a", "b"), property.getParameters("X-PARAM"));
+        paramMap.remove("X-PARAM");
+        assertNull(property.getParameters("X-PARAM"));
+
+        final Collection<String> typeCollection = property.getParameters("TYPE");
+        typeCollection.remove("HOME");
+        assertFalse(typeCollection.add("VOICE"));
+        assertTrue(typeCollection.add("WORK"));
+        assertEquals(Arrays.asList("VOICE", "WORK"), new ArrayList<String>(typeCollection));
+
+        paramMap.put("TYPE", Arrays.asList("CELL", "CELL", "PREF"));
+        assertEquals(Arrays.asList("CELL", "PREF"), new ArrayList<String>(typeCollection));
+        assertEquals(1, paramMap.size());
+
+        final VCardEntry entry = new VCardEntry();
+        entry.addProperty(property);
+        assertEquals(Phone.TYPE_MOBILE, entry.getPhoneList().get(0).getType());
+        assertTrue(entry.getPhoneList().get(0).isPrimary());
+    }
+
+    /**
+     * Tests if binary values are loaded only for the properties using them.
+     */
+    public void testBinaryValueLoadedOnlyForPhoto() {
+        final int[] loadCount = new int[1];
+        final VCardBinaryValue binaryValue = new VCardBinaryValue() {
+            @Override
+            public OutputStream openOutputStream() {
+                throw new UnsupportedOperationException();
+            }
+
+            @Override
+            public InputStream openInputStream() {
+                loadCount[0]++;
+                return new ByteArrayInputStream(new byte[] { 1, 2 });
+            }
+
+            @Override
+            public long getLength() {
+                return 2;
+            }
+        };
+        final VCardEntry entry = new VCardEntry();
+        for (String name : new String[] { "UNKNOWN", "X-UNKNOWN", "TEL" }) {
+            final VCardProperty property = new VCardProperty();
+            property.setName(name);
+            property.setValues("1");
+            property.setBinaryValue(binaryValue);
+            entry.addProperty(property);
+        }
+        assertEquals(0, loadCount[0]);
+        assertEquals(1, entry.getPhoneList().size());
+
+        final VCardProperty property = new VCardProperty();
+        property.setName("PHOTO");
+        property.setBinaryValue(binaryValue);
+        entry.addProperty(property);
+        assertEquals(1, loadCount[0]);
+        assertTrue(Arrays.equals(new byte[] { 1, 2 }, entry.getPhotoList().get(0).getBytes()));
+    }
+
+    public void testParameterNames() {
+        final VCardProperty property = new VCardProperty();
+        property.setName("TEL");
+        property.addParameter(new String("CHARSET"), "UTF-8");
+        property.addParameter("type", "FAX");
+        for (int i = 0; i < 6; i++) {
+            property.addParameter("X-" + i, String.valueOf(i));
+        }
+        property.addParameter(new String("TYPE"), "home");
+        assertEquals(Arrays.asList("UTF-8"), property.getParameters("CHARSET"));
+        // Parameter names are case-sensitive, so "type" is not TYPE.
+        assertEquals(Arrays.asList("FAX"), property.getParameters("type"));
+        assertEquals(Arrays.asList("home"), new ArrayList<String>(property.getParameters("TYPE")));
+        assertEquals(9, property.getParameterMap().size());
+
+        property.getParameterMap().remove("X-2");
+        assertNull(property.getParameters("X-2"));
+        assertEquals(Arrays.asList("3"), property.getParameters("X-3"));
+        final List<String> names = new ArrayList<String>(property.getParameterMap().keySet());
+        assertEquals(Arrays.asList("CHARSET", "type", "X-0", "X-1", "X-3", "X-4", "X-5", "TYPE"),
+                names);
+
+        final VCardProperty copy = new VCardProperty(property);
+        property.clear();
+        assertEquals(names, new ArrayList<String>(copy.getParameterMap().keySet()));
+        copy.setValues("1");
+        final VCardEntry entry = new VCardEntry();
+        entry.addProperty(copy);
+        assertEquals(Phone.TYPE_HOME, entry.getPhoneList().get(0).getType());
+    }
+
+    /**
+     * Tests if collections given via the parameter map are neither modified nor reused by
+     * the property.
+     */
+    public void testParameterCollectionsOfCaller() {
+        final VCardProperty property = new VCardProperty();
+        property.setName("TEL");
+        final List<String> callerList = new ArrayList<String>(Arrays.asList("a"));
+        property.getParameterMap().put("X-A", Collections.singletonList("1"));
+        property.getParameterMap().put("X-B", Arrays.asList("2"));
+        property.getParameterMap().put("X-C", callerList);
+        property.setParameter("X-D", "3");
+        assertEquals(Arrays.asList("3"), property.getParameters("X-D"));
+        assertNull(property.getParameters("X-A"));
+        assertEquals(Arrays.asList("a"), callerList);
+
+        property.getParameterMap().put("X-A", Collections.singletonList("1"));
+        property.getParameterMap().put("X-C", callerList);
+        property.clear();
+        assertEquals(Arrays.asList("a"), callerList);
+        property.setName("TEL");
+        property.addParameter("X-E", "4");
+        assertEquals(Arrays.asList("4"), property.getParameters("X-E"));
+        assertEquals(Arrays.asList("a"), callerList);
+    }
+
+    public void testPropertyDispatch() {
+        final VCardEntry entry = new VCardEntry();
+        VCardProperty property = new VCardProperty();
+        property.setName("X-Custom");
+        property.setValues("value");
+        entry.addProperty(property);
+
+        property = new VCardProperty();
+        property.setName("UNKNOWN");
+        property.setValues("ignored");
+        entry.addProperty(property);
+
+        property = new VCardProperty();
+        property.setName("X-NICKNAME");
+        property.setValues(" nick ");
+        entry.addProperty(property);
+
+        property = new VCardProperty();
+        property.setName("X-AIM");
+        property.setValues("aim");
+        entry.addProperty(property);
+
+        final List<Pair<String, String>> unknownXData = entry.getUnknownXData();
+        assertEquals(1, unknownXData.size());
+        assertEquals("X-Custom", unknownXData.get(0).first);
+        assertEquals("value", unknownXData.get(0).second);
+
+        final List<NicknameData> nicknameList = entry.getNickNameList();
+        assertEquals(1, nicknameList.size());
+        assertEquals("nick", nicknameList.get(0).getNickname());
+
+        final List<ImData> imList = entry.getImList();
+        assertEquals(1, imList.size());
+        assertEquals(Im.PROTOCOL_AIM, imList.get(0).getProtocol());
+        assertEquals("aim", imList.get(0).getAddress());
+    }
+
     // TODO: add bunch of test for constructInsertOperations..
 }
\ No newline at end of file
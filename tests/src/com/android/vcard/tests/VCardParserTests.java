@@ -15,17 +15,47 @@
  */
 package com.android.vcard.tests;
 
+import com.android.vcard.VCardAsyncEntryHandler;
+import com.android.vcard.VCardAsyncInterpreter;
+import com.android.vcard.VCardBinarySink;
+import com.android.vcard.VCardBinaryValue;
+import com.android.vcard.VCardConfig;
+import com.android.vcard.VCardConstants;
+import com.android.vcard.VCardEntry;
+import com.android.vcard.VCardEntryConstructor;
+import com.android.vcard.VCardEntryCounter;
+import com.android.vcard.VCardEntryHandler;
+import com.android.vcard.VCardEntryIndex;
+import com.android.vcard.VCardErrorListener;
+import com.android.vcard.VCardIncrementalParser;
 import com.android.vcard.VCardInterpreter;
+import com.android.vcard.VCardParallelParser;
+import com.android.vcard.VCardParseLimits;
 import com.android.vcard.VCardParser;
+import com.android.vcard.VCardParserMetrics;
+import com.android.vcard.VCardParser_Auto;
 import com.android.vcard.VCardParser_V21;
 import com.android.vcard.VCardParser_V30;
+import com.android.vcard.VCardProgressListener;
 import com.android.vcard.VCardProperty;
+import com.android.vcard.VCardPropertyFilter;
+import com.android.vcard.VCardReader;
+import com.android.vcard.VCardSourceDetector;
 import com.android.vcard.exception.VCardException;
+import com.android.vcard.exception.VCardLimitExceededException;
 
+import android.provider.ContactsContract.CommonDataKinds.Email;
+import android.provider.ContactsContract.CommonDataKinds.Phone;
 import android.test.AndroidTestCase;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
@@ -239,4 +269,1052 @@ public class VCardParserTests extends AndroidTestCase {
         }
 
     }
+
+    /**
+     * Tests that the parser accepts a mix of CR, LF and CRLF line terminators, and lines
+     * longer than its internal read buffer.
+     */
+    public void testMixedLineTerminatorsAndLongLine() throws IOException, VCardException {
+        final StringBuilder builder = new StringBuilder();
+        builder.append("BEGIN:VCARD\r\n");
+        builder.append("VERSION:2.1\n");
+        builder.append("N:Ando;Roid;;;\r");
+        builder.append("NOTE:");
+        for (int i = 0; i < 20000; i++) {
+            builder.append('a');
+        }
+        builder.append("\r\n");
+        builder.append("END:VCARD");  // No terminator at the end of input.
+        final InputStream inputStream = new ByteArrayInputStream(builder.toString().getBytes());
+        try {
+            VCardParser parser = new VCardParser_V21();
+            MockVCardInterpreter interpreter = new MockVCardInterpreter();
+            interpreter.addExpectedOrder(Order.START)
+                    .addExpectedOrder(Order.START_ENTRY)
+                    .addExpectedOrder(Order.PROPERTY_CREATED)  // For VERSION
+                    .addExpectedOrder(Order.PROPERTY_CREATED)  // For N
+                    .addExpectedOrder(Order.PROPERTY_CREATED)  // For NOTE
+                    .addExpectedOrder(Order.END_ENTRY)
+                    .addExpectedOrder(Order.END);
+            parser.addInterpreter(interpreter);
+            parser.parse(inputStream);
+            interpreter.verify();
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Tests if {@link VCardParser#parse(ByteBuffer)} reads bytes between the position and
+     * the limit of a buffer, without modifying the position.
+     */
+    public void testParseByteBuffer() throws IOException, VCardException {
+        final byte[] bytes = ("GARBAGE" + "BEGIN:VCARD\r\nVERSION:3.0\r\nN:Ando;Roid;;;\r\n"
+                + "END:VCARD\r\n" + "GARBAGE").getBytes();
+        final ByteBuffer buffer = ByteBuffer.allocateDirect(bytes.length);
+        buffer.put(bytes);
+        buffer.position(7);
+        buffer.limit(bytes.length - 7);
+
+        VCardParser parser = new VCardParser_V30();
+        MockVCardInterpreter interpreter = new MockVCardInterpreter();
+        interpreter.addExpectedOrder(Order.START)
+                .addExpectedOrder(Order.START_ENTRY)
+                .addExpectedOrder(Order.PROPERTY_CREATED)  // For VERSION
+                .addExpectedOrder(Order.PROPERTY_CREATED)  // For N
+                .addExpectedOrder(Order.END_ENTRY)
+                .addExpectedOrder(Order.END);
+        parser.addInterpreter(interpreter);
+        parser.parse(buffer);
+        interpreter.verify();
+        assertEquals(7, buffer.position());
+    }
+
+    /**
+     * Tests if {@link VCardParallelParser} delivers entries parsed in separate chunks
+     * in source order.
+     */
+    public void testParallelParseOrdered() throws IOException, VCardException {
+        InputStream inputStream =
+                getContext().getResources().openRawResource(R.raw.v21_multiple_entry);
+        try {
+            VCardParallelParser parser =
+                    new VCardParallelParser(VCardConfig.VCARD_TYPE_V21_GENERIC);
+            // Makes each entry a chunk.
+            parser.setChunkSize(1);
+            MockVCardInterpreter interpreter = new MockVCardInterpreter();
+            interpreter.addExpectedOrder(Order.START);
+            for (int i = 0; i < 3; i++) {
+                interpreter.addExpectedOrder(Order.START_ENTRY)
+                        .addExpectedOrder(Order.PROPERTY_CREATED)  // For VERSION
+                        .addExpectedOrder(Order.PROPERTY_CREATED)  // For N
+                        .addExpectedOrder(Order.PROPERTY_CREATED)  // For SOUND
+                        .addExpectedOrder(Order.PROPERTY_CREATED)  // For TEL
+                        .addExpectedOrder(Order.PROPERTY_CREATED)  // For TEL
+                        .addExpectedOrder(Order.PROPERTY_CREATED)  // For TEL
+                        .addExpectedOrder(Order.PROPERTY_CREATED)  // For TEL
+                        .addExpectedOrder(Order.END_ENTRY);
+            }
+            interpreter.addExpectedOrder(Order.END);
+            parser.addInterpreter(interpreter);
+            parser.parse(inputStream);
+            interpreter.verify();
+        } finally {
+            inputStream.close();
+        }
+    }
+
+    /**
+     * Tests if all the entries are delivered in unordered mode, and cancel() before parse()
+     * is not dropped.
+     */
+    public void testParallelParseUnordered() throws IOException, VCardException {
+        final VCardParallelParser parser =
+                new VCardParallelParser(VCardConfig.VCARD_TYPE_V21_GENERIC);
+        parser.setOrdered(false);
+        parser.setChunkSize(1);
+        final VCardEntryCounter counter = new VCardEntryCounter();
+        parser.addInterpreter(counter);
+
+        parser.cancel();
+        InputStream inputStream =
+                getContext().getResources().openRawResource(R.raw.v21_multiple_entry);
+        try {
+            parser.parse(inputStream);
+        } finally {
+            inputStream.close();
+        }
+        assertEquals(0, counter.getCount());
+
+        // The cancellation applies only to one parse.
+        inputStream = getContext().getResources().openRawResource(R.raw.v21_multiple_entry);
+        try {
+            parser.parse(inputStream);
+        } finally {
+            inputStream.close();
+        }
+        assertEquals(3, counter.getCount());
+    }
+
+    public void testParallelParserRejectsReuseProperties() {
+        final VCardParallelParser parser =
+                new VCardParallelParser(VCardConfig.VCARD_TYPE_V21_GENERIC);
+        parser.setReuseProperties(false);
+        try {
+            parser.setReuseProperties(true);
+            fail("IllegalStateException was not thrown");
+        } catch (IllegalStateException e) {
+        }
+    }
+
+    /**
+     * Tests if the input parsed sequentially by {@link VCardParallelParser} gets the options
+     * and cancellation of the parallel parser.
+     */
+    public void testParallelParserSequentialFallback() throws IOException, VCardException {
+        final StringBuilder builder = new StringBuilder("BEGIN:VCARD\r\nVERSION:2.1\r\nNOTE:");
+        while (builder.length() < VCardProgressListener.DEFAULT_INTERVAL * 2) {
+            builder.append("0123456789");
+        }
+        final byte[] data = builder.append("\r\nEND:VCARD\r\n").toString().getBytes();
+        final VCardParallelParser parser =
+                new VCardParallelParser(VCardConfig.VCARD_TYPE_V21_GENERIC);
+        final VCardEntryCounter counter = new VCardEntryCounter();
+        final VCardParserMetrics metrics = new VCardParserMetrics();
+        final long[] progress = new long[1];
+        parser.addInterpreter(counter);
+        parser.setMetrics(metrics);
+        parser.setProgressListener(new VCardProgressListener() {
+            @Override
+            public void onProgress(long bytesRead, long totalBytes) {
+                progress[0] = bytesRead;
+            }
+        });
+        parser.cancel();
+        parser.parseOne(new ByteArrayInputStream(data));
+        assertEquals(0, counter.getCount());
+
+        parser.parseOne(new ByteArrayInputStream(data));
+        assertEquals(1, counter.getCount());
+        assertTrue(progress[0] > 0);
+        assertEquals(data.length, metrics.getBytesRead());
+    }
+
+    private static class PhotoCollector implements VCardInterpreter {
+        public final List<VCardProperty> photoList = new ArrayList<VCardProperty>();
+
+        @Override
+        public void onVCardStarted() {
+        }
+
+        @Override
+        public void onVCardEnded() {
+        }
+
+        @Override
+        public void onEntryStarted() {
+        }
+
+        @Override
+        public void onEntryEnded() {
+        }
+
+        @Override
+        public void onPropertyCreated(VCardProperty property) {
+            if ("PHOTO".equals(property.getName())) {
+                photoList.add(property);
+            }
+        }
+    }
+
+    /**
+     * Tests if parse(FileChannel) keeps the position of the channel, including the default
+     * implementation reading the channel as a stream.
+     */
+    public void testParseFileChannelKeepsPosition() throws IOException, VCardException {
+        final File file = File.createTempFile("vcard", ".vcf", getContext().getCacheDir());
+        try {
+            final FileOutputStream os = new FileOutputStream(file);
+            try {
+                os.write(("BEGIN:VCARD\r\nVERSION:2.1\r\nN:A;B\r\nEND:VCARD\r\n").getBytes());
+            } finally {
+                os.close();
+            }
+            final VCardParser_V21 v21Parser = new VCardParser_V21();
+            final VCardParser defaultParser = new VCardParser() {
+                @Override
+                public void addInterpreter(VCardInterpreter interpreter) {
+                    v21Parser.addInterpreter(interpreter);
+                }
+
+                @Override
+                public void parse(InputStream is) throws IOException, VCardException {
+                    v21Parser.parse(is);
+                }
+
+                @Override
+                public void parseOne(InputStream is) throws IOException, VCardException {
+                    v21Parser.parseOne(is);
+                }
+
+                @Override
+                public void cancel() {
+                    v21Parser.cancel();
+                }
+            };
+            final VCardEntryCounter counter = new VCardEntryCounter();
+            v21Parser.addInterpreter(counter);
+            for (VCardParser parser : new VCardParser[] { v21Parser, defaultParser }) {
+                final FileInputStream is = new FileInputStream(file);
+                try {
+                    parser.parse(is.getChannel());
+                    assertEquals(0, is.getChannel().position());
+                } finally {
+                    is.close();
+                }
+            }
+            assertEquals(2, counter.getCount());
+        } finally {
+            file.delete();
+        }
+    }
+
+    /**
+     * Tests if BASE64 values decoded into a {@link com.android.vcard.VCardBinarySink} are same
+     * as ones decoded into byte arrays.
+     */
+    public void testBinarySink() throws IOException, VCardException {
+        PhotoCollector expected = new PhotoCollector();
+        InputStream inputStream =
+                getContext().getResources().openRawResource(R.raw.v21_blackberry_photo);
+        try {
+            VCardParser parser = new VCardParser_V21();
+            parser.addInterpreter(expected);
+            parser.parse(inputStream);
+        } finally {
+            inputStream.close();
+        }
+
+        PhotoCollector actual = new PhotoCollector();
+        final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        inputStream = getContext().getResources().openRawResource(R.raw.v21_blackberry_photo);
+        try {
+            VCardParser parser = new VCardParser_V21();
+            parser.setBinarySink(VCardBinaryValue.byteBufferSink(buffer));
+            parser.addInterpreter(actual);
+            parser.parse(inputStream);
+        } finally {
+            inputStream.close();
+        }
+
+        assertEquals(1, expected.photoList.size());
+        assertEquals(1, actual.photoList.size());
+        final byte[] expectedBytes = expected.photoList.get(0).getByteValue();
+        // The default sink keeps one copy of the bytes, shared with the property.
+        assertSame(expectedBytes, expected.photoList.get(0).getBinaryValue().getBytes());
+        final VCardBinaryValue binaryValue = actual.photoList.get(0).getBinaryValue();
+        assertEquals(expectedBytes.length, binaryValue.getLength());
+        assertEquals(ByteBuffer.wrap(expectedBytes), binaryValue.getByteBuffer());
+        assertEquals(expectedBytes.length, buffer.position());
+    }
+
+    /**
+     * Tests if values moved into temporary files are loaded as usual, and their files are
+     * deleted once loaded.
+     */
+    public void testSpillThreshold() throws IOException, VCardException {
+        PhotoCollector expected = new PhotoCollector();
+        InputStream inputStream =
+                getContext().getResources().openRawResource(R.raw.v21_blackberry_photo);
+        try {
+            VCardParser parser = new VCardParser_V21();
+            parser.addInterpreter(expected);
+            parser.parse(inputStream);
+        } finally {
+            inputStream.close();
+        }
+
+        final File directory = new File(getContext().getCacheDir(), "spill");
+        assertTrue(directory.isDirectory() || directory.mkdirs());
+        try {
+            final VCardParseLimits limits = new VCardParseLimits();
+            limits.setSpillThreshold(16, directory);
+            final int[] fileCount = new int[1];
+            final PhotoCollector actual = new PhotoCollector() {
+                @Override
+                public void onPropertyCreated(VCardProperty property) {
+                    super.onPropertyCreated(property);
+                    if ("PHOTO".equals(property.getName())) {
+                        fileCount[0] = directory.list().length;
+                        // Loaded while parsing, so that it remains after the file is deleted.
+                        property.getByteValue();
+                        assertEquals(0, directory.list().length);
+                    }
+                }
+            };
+            inputStream = getContext().getResources().openRawResource(R.raw.v21_blackberry_photo);
+            try {
+                VCardParser parser = new VCardParser_V21();
+                parser.setLimits(limits);
+                parser.addInterpreter(actual);
+                parser.parse(inputStream);
+            } finally {
+                inputStream.close();
+            }
+            assertEquals(1, actual.photoList.size());
+            assertEquals(1, fileCount[0]);
+            assertTrue(Arrays.equals(expected.photoList.get(0).getByteValue(),
+                    actual.photoList.get(0).getByteValue()));
+
+            // Files of values not loaded are deleted when parsing ends.
+            final PhotoCollector unloaded = new PhotoCollector();
+            inputStream = getContext().getResources().openRawResource(R.raw.v21_blackberry_photo);
+            try {
+                VCardParser parser = new VCardParser_V21();
+                parser.setLimits(limits);
+                parser.addInterpreter(unloaded);
+                parser.parse(inputStream);
+            } finally {
+                inputStream.close();
+            }
+            assertEquals(1, unloaded.photoList.size());
+            assertEquals(0, directory.list().length);
+
+            // Limits modified after setLimits() apply to the values decoded later.
+            final VCardParseLimits laterLimits = new VCardParseLimits();
+            final PhotoCollector spilledLater = new PhotoCollector() {
+                @Override
+                public void onPropertyCreated(VCardProperty property) {
+                    super.onPropertyCreated(property);
+                    if ("PHOTO".equals(property.getName())) {
+                        fileCount[0] = directory.list().length;
+                    }
+                }
+            };
+            inputStream = getContext().getResources().openRawResource(R.raw.v21_blackberry_photo);
+            try {
+                VCardParser parser = new VCardParser_V21();
+                parser.setLimits(laterLimits);
+                laterLimits.setSpillThreshold(16, directory);
+                parser.addInterpreter(spilledLater);
+                parser.parse(inputStream);
+            } finally {
+                inputStream.close();
+            }
+            assertEquals(1, fileCount[0]);
+            assertEquals(0, directory.list().length);
+        } finally {
+            for (File file : directory.listFiles()) {
+                file.delete();
+            }
+            directory.delete();
+        }
+    }
+
+    /**
+     * Tests if {@link VCardEntryConstructor} accepts values written to streams which cannot be
+     * read back.
+     */
+    public void testOutputStreamSinkWithEntryConstructor() throws IOException, VCardException {
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        final VCardEntryConstructor constructor = new VCardEntryConstructor();
+        final List<VCardEntry> entries = new ArrayList<VCardEntry>();
+        constructor.addEntryHandler(new VCardEntryHandler() {
+            @Override
+            public void onStart() {
+            }
+
+            @Override
+            public void onEntryCreated(VCardEntry entry) {
+                entries.add(entry);
+            }
+
+            @Override
+            public void onEnd() {
+            }
+        });
+        final InputStream inputStream =
+                getContext().getResources().openRawResource(R.raw.v21_blackberry_photo);
+        try {
+            final VCardParser parser = new VCardParser_V21();
+            parser.setBinarySink(new VCardBinarySink() {
+                @Override
+                public VCardBinaryValue createValue(VCardProperty property) {
+                    return VCardBinaryValue.forOutputStream(os);
+                }
+            });
+            parser.addInterpreter(constructor);
+            parser.parse(inputStream);
+        } finally {
+            inputStream.close();
+        }
+        assertEquals(1, entries.size());
+        assertNull(entries.get(0).getPhotoList());
+        assertTrue(os.size() > 0);
+    }
+
+    /**
+     * Tests if {@link VCardReader} returns events in the same order as {@link VCardInterpreter}
+     * receives them, including nested vCards.
+     */
+    public void testReaderNest() throws IOException, VCardException {
+        InputStream inputStream = getContext().getResources().openRawResource(R.raw.v21_nest);
+        final VCardReader reader =
+                new VCardReader(inputStream, VCardConfig.VCARD_TYPE_V21_GENERIC);
+        try {
+            assertEquals(VCardReader.EVENT_ENTRY_STARTED, reader.nextEvent());
+            assertEquals(1, reader.getDepth());
+            assertEquals(VCardReader.EVENT_PROPERTY, reader.nextEvent());  // For VERSION
+            assertEquals("VERSION", reader.getProperty().getName());
+            assertEquals(VCardReader.EVENT_PROPERTY, reader.nextEvent());  // For N
+            assertEquals(VCardReader.EVENT_ENTRY_STARTED, reader.nextEvent());
+            assertEquals(2, reader.getDepth());
+            assertEquals(VCardReader.EVENT_PROPERTY, reader.nextEvent());  // For VERSION
+            assertEquals(VCardReader.EVENT_PROPERTY, reader.nextEvent());  // For N
+            assertEquals(VCardReader.EVENT_ENTRY_ENDED, reader.nextEvent());
+            assertEquals(1, reader.getDepth());
+            // Skips the second nested vCard.
+            assertEquals("VERSION", reader.nextProperty().getName());
+            assertEquals("N", reader.nextProperty().getName());
+            assertEquals("TEL", reader.nextProperty().getName());
+            assertNull(reader.nextProperty());
+            assertEquals(0, reader.getDepth());
+            assertEquals(VCardReader.EVENT_END_OF_INPUT, reader.nextEvent());
+        } finally {
+            reader.close();
+        }
+    }
+
+    /**
+     * Tests if a parser reusing {@link VCardProperty} objects returns one object for every
+     * property, and copies keep their values.
+     */
+    public void testReuseProperties() throws IOException, VCardException {
+        final String line = "TEL;TYPE=HOME;X-PARAM=A:1234";
+        final VCardReader reader = new VCardReader(
+                new ByteArrayInputStream(("BEGIN:VCARD\r\nVERSION:2.1\r\n" + line + "\r\n"
+                        + line + "\r\nEND:VCARD\r\n").getBytes()),
+                VCardConfig.VCARD_TYPE_V21_GENERIC);
+        reader.setReuseProperties(true);
+        final VCardProperty version = reader.nextProperty();
+        assertEquals("VERSION", version.getName());
+        final VCardProperty version2 = new VCardProperty(version);
+        final VCardProperty tel = reader.nextProperty();
+        assertSame(version, tel);
+        assertEquals("VERSION", version2.getName());
+        assertEquals(Arrays.asList("2.1"), version2.getValueList());
+        assertEquals("TEL", tel.getName());
+        assertTrue(tel.getParameters("TYPE").contains("HOME"));
+        assertEquals(Arrays.asList("A"), tel.getParameters("X-PARAM"));
+        final VCardProperty tel2 = reader.nextProperty();
+        assertSame(tel, tel2);
+        assertEquals(1, tel2.getParameters("TYPE").size());
+        assertEquals(Arrays.asList("1234"), tel2.getValueList());
+        assertNull(reader.nextProperty());
+        reader.close();
+    }
+
+    /**
+     * Tests if known property and parameter names are canonicalized to upper cases, while
+     * unknown ones are kept as is.
+     */
+    public void testCanonicalNames() throws IOException, VCardException {
+        final VCardReader reader = new VCardReader(
+                new ByteArrayInputStream(("BEGIN:VCARD\r\nVERSION:2.1\r\n"
+                        + "tel;Type=HOME;x-Param=A:1234\r\nX-Unknown:a\r\nEND:VCARD\r\n")
+                        .getBytes()),
+                VCardConfig.VCARD_TYPE_V21_GENERIC);
+        assertEquals("VERSION", reader.nextProperty().getName());
+        final VCardProperty tel = reader.nextProperty();
+        assertEquals("TEL", tel.getName());
+        assertTrue(tel.getParameters("TYPE").contains("HOME"));
+        assertEquals(Arrays.asList("A"), tel.getParameters("X-PARAM"));
+        assertEquals("X-Unknown", reader.nextProperty().getName());
+        assertNull(reader.nextProperty());
+        reader.close();
+    }
+
+    /**
+     * Tests if properties with known names in lower case are imported as the upper-case ones.
+     */
+    public void testLowerCaseNamesImported() throws IOException, VCardException {
+        final List<VCardEntry> entries = new ArrayList<VCardEntry>();
+        final VCardEntryConstructor constructor = new VCardEntryConstructor();
+        constructor.addEntryHandler(new VCardEntryHandler() {
+            @Override
+            public void onStart() {
+            }
+
+            @Override
+            public void onEntryCreated(VCardEntry entry) {
+                entries.add(entry);
+            }
+
+            @Override
+            public void onEnd() {
+            }
+        });
+        final VCardParser parser = new VCardParser_V21();
+        parser.addInterpreter(constructor);
+        parser.parse(new ByteArrayInputStream(("BEGIN:VCARD\r\nversion:2.1\r\n"
+                + "n:Smith;John\r\ntel;type=home:1234\r\nEmail;Work:a@example.com\r\n"
+                + "END:VCARD\r\n").getBytes()));
+        assertEquals(1, entries.size());
+        final VCardEntry entry = entries.get(0);
+        assertEquals("Smith", entry.getNameData().getFamily());
+        assertEquals(1, entry.getPhoneList().size());
+        assertEquals("1234", entry.getPhoneList().get(0).getNumber());
+        assertEquals(Phone.TYPE_HOME, entry.getPhoneList().get(0).getType());
+        assertEquals(1, entry.getEmailList().size());
+        assertEquals(Email.TYPE_WORK, entry.getEmailList().get(0).getType());
+    }
+
+    public void testValueDecodedOnRequest() throws IOException, VCardException {
+        final VCardReader reader = new VCardReader(
+                new ByteArrayInputStream(("BEGIN:VCARD\r\nVERSION:2.1\r\n"
+                        + "N;ENCODING=QUOTED-PRINTABLE:=41;B=\r\n=43\r\n"
+                        + "NOTE;ENCODING=QUOTED-PRINTABLE:=41\r\nEND:VCARD\r\n").getBytes()),
+                VCardConfig.VCARD_TYPE_V21_GENERIC);
+        reader.nextProperty();
+        final VCardProperty n = reader.nextProperty();
+        assertEquals("=41;B=\r\n=43", n.getRawValue());
+        assertEquals(Arrays.asList("A", "BC"), n.getValueList());
+        final VCardProperty note = new VCardProperty(reader.nextProperty());
+        assertEquals(Arrays.asList("A"), note.getValueList());
+        note.addValues("B");
+        assertEquals(Arrays.asList("A", "B"), note.getValueList());
+        assertNull(reader.nextProperty());
+        reader.close();
+    }
+
+    public void testMetrics() throws IOException, VCardException {
+        final byte[] data = ("BEGIN:VCARD\r\nVERSION:2.1\r\nN;ENCODING=QUOTED-PRINTABLE:=41;B\r\n"
+                + "TEL:1\r\nTEL:2\r\nEND:VCARD\r\n").getBytes();
+        final VCardParserMetrics metrics = new VCardParserMetrics();
+        final VCardParser parser = new VCardParser_V21();
+        // Decodes values while building entries.
+        parser.addInterpreter(new VCardEntryConstructor());
+        parser.setMetrics(metrics);
+        parser.parse(new ByteArrayInputStream(data));
+        assertEquals(data.length, metrics.getBytesRead());
+        assertEquals(6, metrics.getLineCount());
+        assertEquals(1, metrics.getEntryCount());
+        assertEquals(4, metrics.getPropertyCount());
+        assertEquals(2, metrics.getPropertyCount("TEL"));
+        assertTrue(metrics.getDecodeNanos(VCardConstants.PARAM_ENCODING_QP) > 0);
+        metrics.reset();
+        assertEquals(0, metrics.getBytesRead());
+    }
+
+    /**
+     * Tests if the auto-detecting parser reports the input read when it is canceled outside
+     * entries.
+     */
+    public void testMetricsOfCanceledAutoParser() throws IOException, VCardException {
+        final StringBuilder builder = new StringBuilder(
+                "BEGIN:VCARD\r\nVERSION:3.0\r\nN:A;B\r\nEND:VCARD\r\n");
+        while (builder.length() < VCardProgressListener.DEFAULT_INTERVAL * 3) {
+            builder.append("GARBAGE\r\n");
+        }
+        final byte[] data = builder.toString().getBytes();
+        final VCardParserMetrics metrics = new VCardParserMetrics();
+        final VCardParser parser = new VCardParser_Auto();
+        final long[] canceledPosition = new long[1];
+        parser.setMetrics(metrics);
+        parser.setProgressListener(new VCardProgressListener() {
+            @Override
+            public void onProgress(long bytesRead, long totalBytes) {
+                if (bytesRead > VCardProgressListener.DEFAULT_INTERVAL) {
+                    canceledPosition[0] = bytesRead;
+                    parser.cancel();
+                }
+            }
+        });
+        parser.parse(new ByteArrayInputStream(data));
+        // The line after the position is read before the parser stops.
+        assertTrue(canceledPosition[0] > 0);
+        assertTrue(metrics.getBytesRead() >= canceledPosition[0]);
+    }
+
+    public void testCancelInsideLongValue() throws IOException, VCardException {
+        final StringBuilder builder = new StringBuilder(
+                "BEGIN:VCARD\r\nVERSION:2.1\r\nN:A;B\r\nPHOTO;ENCODING=BASE64:\r\n");
+        for (int i = 0; i < 10000; i++) {
+            builder.append(" QUJDQUJDQUJDQUJDQUJDQUJDQUJDQUJDQUJDQUJDQUJDQUJDQUJDQUJDQUJD\r\n");
+        }
+        builder.append("\r\nEND:VCARD\r\n");
+        final byte[] data = builder.toString().getBytes();
+        final VCardParser parser = new VCardParser_V21();
+        final List<Long> progress = new ArrayList<Long>();
+        parser.setProgressListener(new VCardProgressListener() {
+            @Override
+            public void onProgress(long bytesRead, long totalBytes) {
+                assertEquals(data.length, totalBytes);
+                progress.add(bytesRead);
+                if (progress.size() == 2) {
+                    parser.cancel();
+                }
+            }
+        });
+        final MockVCardInterpreter interpreter = new MockVCardInterpreter();
+        interpreter.addExpectedOrder(Order.START)
+                .addExpectedOrder(Order.START_ENTRY)
+                .addExpectedOrder(Order.PROPERTY_CREATED)
+                .addExpectedOrder(Order.PROPERTY_CREATED)
+                // The entry left open is ended.
+                .addExpectedOrder(Order.END_ENTRY)
+                .addExpectedOrder(Order.END);
+        parser.addInterpreter(interpreter);
+        parser.parse(ByteBuffer.wrap(data));
+        interpreter.verify();
+        assertEquals(2, progress.size());
+        assertTrue(progress.get(1) < data.length);
+    }
+
+    public void testAutoVersion() throws IOException, VCardException {
+        final String data = "BEGIN:VCARD\r\nVERSION:3.0\r\n"
+                + "NOTE:long\r\n  line\\, x\r\nEND:VCARD\r\n"
+                + "BEGIN:VCARD\r\nVERSION:2.1\r\n"
+                + "N;ENCODING=QUOTED-PRINTABLE:=41;=42\r\nEND:VCARD\r\n"
+                + "BEGIN:VCARD\r\nVERSION:4.0\r\nFN:C\r\nEND:VCARD\r\n";
+        final List<VCardProperty> properties = new ArrayList<VCardProperty>();
+        final VCardParser parser = new VCardParser_Auto();
+        parser.addInterpreter(new VCardInterpreter() {
+            @Override
+            public void onVCardStarted() {
+            }
+
+            @Override
+            public void onVCardEnded() {
+            }
+
+            @Override
+            public void onEntryStarted() {
+            }
+
+            @Override
+            public void onEntryEnded() {
+            }
+
+            @Override
+            public void onPropertyCreated(VCardProperty property) {
+                properties.add(property);
+            }
+        });
+        parser.parse(new ByteArrayInputStream(data.getBytes()));
+        assertEquals(6, properties.size());
+        assertEquals(Arrays.asList("long line, x"), properties.get(1).getValueList());
+        assertEquals(Arrays.asList("A", "B"), properties.get(3).getValueList());
+        assertEquals(Arrays.asList("4.0"), properties.get(4).getValueList());
+        assertEquals(Arrays.asList("C"), properties.get(5).getValueList());
+    }
+
+    public void testEntryIndex() throws IOException, VCardException {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            if (i % 2 == 0) {
+                builder.append("BEGIN:VCARD\r\nVERSION:2.1\r\nFN:Name " + i + "\r\n"
+                        + "AGENT:\r\nBEGIN:VCARD\r\nVERSION:2.1\r\nEND:VCARD\r\nEND:VCARD\r\n");
+            } else {
+                builder.append("BEGIN:VCARD\nVERSION:3.0\nFN:Na\n me " + i + "\nEND:VCARD\n");
+            }
+        }
+        final byte[] data = builder.toString().getBytes();
+        final VCardEntryIndex index = VCardEntryIndex.build(ByteBuffer.wrap(data));
+        assertEquals(100, index.size());
+        assertEquals(0, index.getOffset(0));
+        assertEquals(index.getOffset(0) + index.getLength(0), index.getOffset(1));
+        assertEquals(data.length, index.getOffset(99) + index.getLength(99));
+        assertEquals(VCardConfig.VERSION_21, index.getVersion(50));
+        assertEquals(VCardConfig.VERSION_30, index.getVersion(51));
+        assertEquals("Name 51".hashCode(), index.getDisplayNameHash(51));
+
+        final VCardEntryCounter counter = new VCardEntryCounter();
+        final VCardParser parser = new VCardParser_Auto();
+        parser.addInterpreter(counter);
+        index.parseAt(parser, 50);
+        assertEquals(2, counter.getCount());
+        index.parseRange(parser, 97, 100);
+        assertEquals(6, counter.getCount());
+    }
+
+    public void testPropertyFilter() throws IOException, VCardException {
+        final VCardReader reader = new VCardReader(
+                new ByteArrayInputStream(("BEGIN:VCARD\r\nVERSION:2.1\r\nN:A;B\r\n"
+                        + "PHOTO;ENCODING=BASE64:QUJD\r\n QUJD\r\n\r\n"
+                        + "NOTE;ENCODING=QUOTED-PRINTABLE:=41=\r\n=42\r\n"
+                        + "EMAIL:a@example.com\r\n  folded\r\nTEL:1234\r\nEND:VCARD\r\n")
+                        .getBytes()),
+                VCardConfig.VCARD_TYPE_V21_GENERIC);
+        reader.setPropertyFilter(new VCardPropertyFilter() {
+            @Override
+            public boolean accept(String propertyName) {
+                return propertyName.equals("N") || propertyName.equals("TEL");
+            }
+        });
+        assertEquals(VCardReader.EVENT_ENTRY_STARTED, reader.nextEvent());
+        assertEquals(Arrays.asList("A", "B"), reader.nextProperty().getValueList());
+        assertEquals(Arrays.asList("1234"), reader.nextProperty().getValueList());
+        assertEquals(VCardReader.EVENT_ENTRY_ENDED, reader.nextEvent());
+        assertEquals(VCardReader.EVENT_END_OF_INPUT, reader.nextEvent());
+        reader.close();
+    }
+
+    public void testIncrementalParser() throws IOException, VCardException {
+        final VCardIncrementalParser parser =
+                new VCardIncrementalParser(VCardConfig.VCARD_TYPE_V21_GENERIC);
+        final VCardEntryCounter counter = new VCardEntryCounter();
+        final MockVCardInterpreter interpreter = new MockVCardInterpreter();
+        interpreter.addExpectedOrder(Order.START)
+                .addExpectedOrder(Order.START_ENTRY)
+                .addExpectedOrder(Order.PROPERTY_CREATED)
+                .addExpectedOrder(Order.PROPERTY_CREATED)
+                .addExpectedOrder(Order.END_ENTRY)
+                .addExpectedOrder(Order.START_ENTRY)
+                .addExpectedOrder(Order.PROPERTY_CREATED)
+                .addExpectedOrder(Order.END_ENTRY)
+                .addExpectedOrder(Order.END);
+        parser.addInterpreter(interpreter);
+        parser.addInterpreter(counter);
+        final byte[] data = ("BEGIN:VCARD\r\nVERSION:2.1\r\n"
+                + "NOTE;ENCODING=QUOTED-PRINTABLE:=41=\r\n=42\r\nEND:VCARD\r\n"
+                + "BEGIN:VCARD\r\nVERSION:2.1\r\nEND:VCARD").getBytes();
+        // Feed one byte at a time.
+        for (int i = 0; i < data.length; i++) {
+            parser.feed(ByteBuffer.wrap(data, i, 1));
+            if (i == 50) {
+                assertEquals(0, counter.getCount());
+            }
+        }
+        assertEquals(1, counter.getCount());
+        parser.endOfInput();
+        assertEquals(2, counter.getCount());
+        interpreter.verify();
+    }
+
+    /**
+     * Tests if values decoded into sinks by {@link VCardIncrementalParser} are written once,
+     * even when they are parsed again after more bytes are fed.
+     */
+    public void testIncrementalParserBinarySink() throws IOException, VCardException {
+        // Longer than the chunk decoded at once, so that bytes are written before the value
+        // completes.
+        final StringBuilder builder = new StringBuilder(
+                "BEGIN:VCARD\r\nVERSION:2.1\r\nPHOTO;ENCODING=BASE64:\r\n");
+        final StringBuilder expectedBuilder = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            builder.append(' ');
+            for (int j = 0; j < 19; j++) {
+                builder.append("QUJD");
+                expectedBuilder.append("ABC");
+            }
+            builder.append("\r\n");
+        }
+        builder.append("\r\nEND:VCARD\r\n");
+        final byte[] bytes = builder.toString().getBytes();
+        final byte[] expectedBytes = expectedBuilder.toString().getBytes();
+
+        final ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+        final ByteArrayOutputStream os = new ByteArrayOutputStream();
+        final VCardBinarySink[] sinks = {
+                VCardBinaryValue.byteBufferSink(buffer),
+                new VCardBinarySink() {
+                    @Override
+                    public VCardBinaryValue createValue(VCardProperty property) {
+                        return VCardBinaryValue.forOutputStream(os);
+                    }
+                }
+        };
+        for (VCardBinarySink sink : sinks) {
+            final PhotoCollector actual = new PhotoCollector();
+            final VCardIncrementalParser incrementalParser =
+                    new VCardIncrementalParser(VCardConfig.VCARD_TYPE_V21_GENERIC);
+            incrementalParser.setBinarySink(sink);
+            incrementalParser.addInterpreter(actual);
+            for (int i = 0; i < bytes.length; i += 100) {
+                incrementalParser.feed(
+                        ByteBuffer.wrap(bytes, i, Math.min(100, bytes.length - i)));
+            }
+            incrementalParser.endOfInput();
+            assertEquals(1, actual.photoList.size());
+            assertEquals(expectedBytes.length,
+                    actual.photoList.get(0).getBinaryValue().getLength());
+        }
+        assertEquals(expectedBytes.length, buffer.position());
+        assertTrue(Arrays.equals(expectedBytes, os.toByteArray()));
+    }
+
+    /**
+     * Tests if transport padding after soft line breaks of Quoted-Printable values is removed.
+     * Parsing such a value used to loop forever.
+     */
+    public void testQuotedPrintableTransportPadding() throws IOException, VCardException {
+        final String data = "BEGIN:VCARD\r\nVERSION:2.1\r\n"
+                + "NOTE;ENCODING=QUOTED-PRINTABLE:=41= \r\n=42=\t \r\n=43\r\n"
+                + "END:VCARD\r\n";
+        final VCardReader reader = new VCardReader(new ByteArrayInputStream(data.getBytes()),
+                VCardConfig.VCARD_TYPE_V21_GENERIC);
+        assertEquals(VCardReader.EVENT_ENTRY_STARTED, reader.nextEvent());
+        assertEquals(Arrays.asList("2.1"), reader.nextProperty().getValueList());
+        assertEquals(Arrays.asList("ABC"), reader.nextProperty().getValueList());
+        assertEquals(VCardReader.EVENT_ENTRY_ENDED, reader.nextEvent());
+        reader.close();
+    }
+
+    public void testLimits() throws IOException, VCardException {
+        final String data = "BEGIN:VCARD\r\nVERSION:2.1\r\nN:A;B\r\n"
+                + "NOTE:0123456789\r\n 0123456789\r\n"
+                + "EMAIL;HOME;WORK;PREF:a@example.com\r\n"
+                + "PHOTO;ENCODING=BASE64:QUJDREVGR0hJSktM\r\n QUJDREVGR0hJSktM\r\n\r\n"
+                + "TEL:1234\r\nEND:VCARD\r\n";
+        final VCardParseLimits limits = new VCardParseLimits();
+        limits.setMaxValueLength(15);
+        limits.setMaxParameterCount(2);
+        limits.setMaxBinaryLength(20);
+
+        final VCardParser parser = new VCardParser_V21();
+        parser.setLimits(limits);
+        try {
+            parser.parse(new ByteArrayInputStream(data.getBytes()));
+            fail("VCardLimitExceededException was not thrown");
+        } catch (VCardLimitExceededException e) {
+        }
+
+        // Oversized properties are dropped, and the others are parsed as usual.
+        limits.setSkipOversizedProperties(true);
+        final VCardReader reader = new VCardReader(new ByteArrayInputStream(data.getBytes()),
+                VCardConfig.VCARD_TYPE_V21_GENERIC);
+        reader.setLimits(limits);
+        assertEquals(VCardReader.EVENT_ENTRY_STARTED, reader.nextEvent());
+        assertEquals(Arrays.asList("2.1"), reader.nextProperty().getValueList());
+        assertEquals(Arrays.asList("A", "B"), reader.nextProperty().getValueList());
+        assertEquals(Arrays.asList("1234"), reader.nextProperty().getValueList());
+        assertEquals(VCardReader.EVENT_ENTRY_ENDED, reader.nextEvent());
+        assertEquals(VCardReader.EVENT_END_OF_INPUT, reader.nextEvent());
+        reader.close();
+    }
+
+    public void testAsyncInterpreter() throws IOException, VCardException {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            builder.append("BEGIN:VCARD\r\nVERSION:2.1\r\nFN:Name " + i + "\r\nEND:VCARD\r\n");
+        }
+        final Thread parsingThread = Thread.currentThread();
+        final List<String> names = new ArrayList<String>();
+        final VCardEntryConstructor constructor = new VCardEntryConstructor();
+        constructor.addEntryHandler(new VCardAsyncEntryHandler(new VCardEntryHandler() {
+            @Override
+            public void onStart() {
+            }
+
+            @Override
+            public void onEntryCreated(VCardEntry entry) {
+                assertNotSame(parsingThread, Thread.currentThread());
+                names.add(entry.getDisplayName());
+            }
+
+            @Override
+            public void onEnd() {
+            }
+        }, 1));
+        final VCardParser parser = new VCardParser_V21();
+        parser.addInterpreter(new VCardAsyncInterpreter(constructor, 1));
+        parser.parse(new ByteArrayInputStream(builder.toString().getBytes()));
+        assertEquals(100, names.size());
+        for (int i = 0; i < 100; i++) {
+            assertEquals("Name " + i, names.get(i));
+        }
+
+        // Errors in the interpreter thread are thrown in the parsing thread.
+        final VCardAsyncInterpreter failing = new VCardAsyncInterpreter(new VCardEntryCounter() {
+            @Override
+            public void onEntryEnded() {
+                throw new IllegalStateException("Failed");
+            }
+        }, 1);
+        final VCardParser failingParser = new VCardParser_V21();
+        failingParser.addInterpreter(failing);
+        try {
+            failingParser.parse(new ByteArrayInputStream(builder.toString().getBytes()));
+            fail("IllegalStateException was not thrown");
+        } catch (IllegalStateException e) {
+            assertEquals("Failed", e.getMessage());
+        } finally {
+            failing.abort();
+        }
+    }
+
+    public void testSourceDetectorSampling() throws IOException, VCardException {
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            builder.append("BEGIN:VCARD\r\nVERSION:2.1\r\nN:A;B\r\n"
+                    + (i == 0 ? "X-GNO:1\r\n" : "") + (i == 99 ? "X-ABUID:1\r\n" : "")
+                    + "END:VCARD\r\n");
+        }
+        final byte[] data = builder.toString().getBytes();
+
+        VCardSourceDetector detector = VCardSourceDetector.detect(
+                new ByteArrayInputStream(data), 2, 1024, VCardSourceDetector.CONFIDENCE_HIGH);
+        assertTrue(detector.isSampled());
+        assertEquals(2, detector.getEntryCount());
+        assertEquals(VCardSourceDetector.CONFIDENCE_HIGH, detector.getConfidence());
+        assertEquals(VCardConfig.VCARD_TYPE_V21_JAPANESE_MOBILE, detector.getEstimatedType());
+
+        // The sample without the first entry has no sign, so the whole input is scanned.
+        final int firstLength = builder.indexOf("BEGIN:VCARD", 1);
+        final ByteArrayInputStream is =
+                new ByteArrayInputStream(data, firstLength, data.length - firstLength);
+        detector = VCardSourceDetector.detect(is, 2, 1024, VCardSourceDetector.CONFIDENCE_HIGH);
+        assertFalse(detector.isSampled());
+        assertEquals(99, detector.getEntryCount());
+        assertEquals(VCardSourceDetector.CONFIDENCE_HIGH, detector.getConfidence());
+        assertEquals(VCardConfig.VCARD_TYPE_V21_GENERIC, detector.getEstimatedType());
+    }
+
+    /**
+     * Tests if the sample is read only as far as the parser needs, however large the budget.
+     */
+    public void testSourceDetectorReadsSampleOnDemand() throws IOException, VCardException {
+        final StringBuilder builder = new StringBuilder();
+        while (builder.length() < 1024 * 1024) {
+            builder.append("BEGIN:VCARD\r\nVERSION:2.1\r\nN:A;B\r\nX-GNO:1\r\nEND:VCARD\r\n");
+        }
+        final byte[] data = builder.toString().getBytes();
+        final ByteArrayInputStream is = new ByteArrayInputStream(data);
+        final VCardSourceDetector detector = VCardSourceDetector.detect(
+                is, 2, Integer.MAX_VALUE, VCardSourceDetector.CONFIDENCE_HIGH);
+        assertTrue(detector.isSampled());
+        assertEquals(2, detector.getEntryCount());
+        assertEquals(VCardConfig.VCARD_TYPE_V21_JAPANESE_MOBILE, detector.getEstimatedType());
+        assertTrue(data.length - is.available() < data.length / 4);
+    }
+
+    public void testLineTerminatorsAfterControlCharacters() throws IOException, VCardException {
+        // Tabs and other control characters are candidates of line terminators when 8 bytes
+        // are tested at once, so they should not end lines.
+        final VCardReader reader = new VCardReader(
+                ByteBuffer.wrap(("BEGIN:VCARD\nVERSION:3.0\rNOTE:a\tb\u000cc\r\n"
+                        + "NOTE:0123456789\t0123456789\u000b\nNOTE:\t\t\t\t\t\t\t\t\tx\r"
+                        + "END:VCARD").getBytes()),
+                VCardConfig.VCARD_TYPE_V30_GENERIC);
+        assertEquals(Arrays.asList("3.0"), reader.nextProperty().getValueList());
+        assertEquals(Arrays.asList("a\tb\u000cc"), reader.nextProperty().getValueList());
+        assertEquals(Arrays.asList("0123456789\t0123456789\u000b"),
+                reader.nextProperty().getValueList());
+        assertEquals(Arrays.asList("\t\t\t\t\t\t\t\t\tx"), reader.nextProperty().getValueList());
+        assertNull(reader.nextProperty());
+        reader.close();
+    }
+
+    public void testErrorListener() throws IOException, VCardException {
+        final String entry = "BEGIN:VCARD\r\nVERSION:2.1\r\nN:A;B\r\nEND:VCARD\r\n";
+        final String badEntry = "BEGIN:VCARD\r\nVERSION:2.1\r\nN:C;D\r\nBEGIN:VCALENDAR\r\n"
+                + "AGENT:\r\nBEGIN:VCARD\r\nN:E\r\nEND:VCARD\r\nEND:VCARD\r\n";
+        final byte[] data = (entry + badEntry + entry).getBytes();
+        final long errorPosition = entry.length() + badEntry.indexOf("BEGIN:VCALENDAR");
+
+        try {
+            new VCardParser_V21().parse(new ByteArrayInputStream(data));
+            fail("VCardException was not thrown");
+        } catch (VCardException e) {
+        }
+
+        final VCardParser[] parsers = new VCardParser[] {
+                new VCardParser_V21(), new VCardParallelParser(VCardConfig.VCARD_TYPE_V21_GENERIC)};
+        for (VCardParser parser : parsers) {
+            if (parser instanceof VCardParallelParser) {
+                ((VCardParallelParser) parser).setChunkSize(1);
+            }
+            final List<Long> positions = new ArrayList<Long>();
+            parser.setErrorListener(new VCardErrorListener() {
+                @Override
+                public void onError(VCardException exception, long position) {
+                    positions.add(position);
+                }
+            });
+            final VCardEntryCounter counter = new VCardEntryCounter();
+            parser.addInterpreter(counter);
+            parser.parse(ByteBuffer.wrap(data));
+            // The bad entry is ended at the error, and the next entry is parsed as usual.
+            assertEquals(3, counter.getCount());
+            assertEquals(Arrays.asList(errorPosition), positions);
+        }
+    }
+
+    public void testErrorListenerWithTruncatedEntry() throws IOException, VCardException {
+        final String entry = "BEGIN:VCARD\r\nVERSION:2.1\r\nN:A;B\r\nEND:VCARD\r\n";
+        // Lacks its END:VCARD.
+        final String badEntry = "BEGIN:VCARD\r\nVERSION:2.1\r\nN:Bad\r\nBEGIN:VCALENDAR\r\n";
+        final String badData = badEntry + entry + badEntry + entry + entry;
+
+        final List<Long> positions = new ArrayList<Long>();
+        final VCardParser parser = new VCardParser_V21();
+        parser.setErrorListener(new VCardErrorListener() {
+            @Override
+            public void onError(VCardException exception, long position) {
+                positions.add(position);
+            }
+        });
+        final VCardEntryCounter counter = new VCardEntryCounter();
+        parser.addInterpreter(counter);
+        parser.parse(ByteBuffer.wrap(badData.getBytes()));
+        // Each bad entry is reported, and the good entries after them are parsed.
+        assertEquals(5, counter.getCount());
+        final long errorPosition = badEntry.indexOf("BEGIN:VCALENDAR");
+        final long secondErrorPosition = badEntry.length() + entry.length() + errorPosition;
+        assertEquals(Arrays.asList(errorPosition, secondErrorPosition), positions);
+    }
+
+    public void testUnfoldingV30() throws IOException, VCardException {
+        final VCardReader reader = new VCardReader(
+                new ByteArrayInputStream(("BEGIN:VCARD\r\nVERSION:3.0\r\nNOTE:a\r\n b\r\r\n\tc\n"
+                        + " d\rN:A;\r\n B\r\nEND:VCARD\r\n").getBytes()),
+                VCardConfig.VCARD_TYPE_V30_GENERIC);
+        assertEquals(Arrays.asList("3.0"), reader.nextProperty().getValueList());
+        // Empty lines between continuation lines are ignored.
+        assertEquals(Arrays.asList("abcd"), reader.nextProperty().getValueList());
+        assertEquals(Arrays.asList("A", "B"), reader.nextProperty().getValueList());
+        assertNull(reader.nextProperty());
+        reader.close();
+    }
 }
@@ -15,12 +15,17 @@
  */
 package com.android.vcard.tests;
 
+import android.telephony.PhoneNumberUtils;
 import android.text.TextUtils;
 
+import com.android.vcard.VCardConfig;
+import com.android.vcard.VCardPhoneNumberFormatCache;
 import com.android.vcard.VCardUtils;
 
 import junit.framework.TestCase;
 
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
 import java.util.List;
 
 public class VCardUtilsTests extends TestCase {
@@ -141,4 +146,62 @@ public class VCardUtilsTests extends TestCase {
         assertFalse(VCardUtils.appearsLikeAndroidVCardQuotedPrintable("=12_"));
         assertFalse(VCardUtils.appearsLikeAndroidVCardQuotedPrintable("=12=34_56="));
     }
+
+    public void testParseQuotedPrintable() {
+        // Soft line breaks, with and without transport padding.
+        assertEquals("\u3042\u3044", VCardUtils.parseQuotedPrintable(
+                "=E3=81=82=\r\n=E3=81=84", false, "ISO-8859-1", "UTF-8"));
+        assertEquals("a b\tc", VCardUtils.parseQuotedPrintable(
+                "a= b=\tc=\n", false, "ISO-8859-1", "UTF-8"));
+        // Invalid escape sequences are left as they are.
+        assertEquals("=4G", VCardUtils.parseQuotedPrintable(
+                "=4G", false, "ISO-8859-1", "UTF-8"));
+        assertEquals("=41=", VCardUtils.parseQuotedPrintable(
+                "=41==", false, "ISO-8859-1", "UTF-8"));
+    }
+
+    public void testConstructListFromValue() {
+        assertEquals(Arrays.asList("Smith", "Bob", "", ""),
+                VCardUtils.constructListFromValue("Smith;Bob;;", VCardConfig.VERSION_30));
+        assertEquals(Arrays.asList("a;b", "c\nd", "\\"), VCardUtils.constructListFromValue(
+                "a\\;b;c\\nd;\\\\", VCardConfig.VERSION_30));
+        assertEquals(Arrays.asList("a;b", "c\\nd", "\\"), VCardUtils.constructListFromValue(
+                "a\\;b;c\\nd;\\\\", VCardConfig.VERSION_21));
+    }
+
+    public void testConvertStringCharset() throws UnsupportedEncodingException {
+        final String expected = "\u3042\u00e9a";
+        final String intermediate = new String(expected.getBytes("UTF-8"), "ISO-8859-1");
+        assertEquals(expected,
+                VCardUtils.convertStringCharset(intermediate, "ISO-8859-1", "UTF-8"));
+        assertEquals("\u3042a", VCardUtils.convertStringCharset(
+                new String("\u3042a".getBytes("Shift_JIS"), "ISO-8859-1"),
+                "iso-8859-1", "Shift_JIS"));
+        assertEquals("a", VCardUtils.convertStringCharset("a", "ISO-8859-1", "UTF-8"));
+        // Chars not in the source charset become '?', as with String#getBytes().
+        assertEquals("?a", VCardUtils.convertStringCharset("\u3042a", "ISO-8859-1", "UTF-8"));
+    }
+
+    public void testPhoneNumberFormatCache() {
+        final VCardPhoneNumberFormatCache cache = new VCardPhoneNumberFormatCache(32);
+        final String expected = VCardUtils.PhoneNumberUtilsPort.formatNumber(
+                "6502530000", PhoneNumberUtils.FORMAT_NANP);
+        assertEquals(expected, cache.formatNumber("6502530000", PhoneNumberUtils.FORMAT_NANP));
+        assertEquals(0, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(expected, cache.formatNumber("6502530000", PhoneNumberUtils.FORMAT_NANP));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+
+        // The formatting type is a part of the key.
+        cache.formatNumber("6502530000", PhoneNumberUtils.FORMAT_JAPAN);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+
+        cache.clear();
+        assertEquals(0, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+        cache.formatNumber("6502530000", PhoneNumberUtils.FORMAT_NANP);
+        assertEquals(1, cache.getMissCount());
+    }
 }